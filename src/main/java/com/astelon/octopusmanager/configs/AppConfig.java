@@ -1,13 +1,74 @@
 package com.astelon.octopusmanager.configs;
 
+import com.astelon.octopusmanager.data.ProcessPriority;
+import com.astelon.octopusmanager.utils.ConsoleExecutors;
+import com.astelon.octopusmanager.utils.ConsolePipeline;
+import com.astelon.octopusmanager.utils.ConsoleSubscriberGuard;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
+
 @ConfigurationProperties("app")
 public class AppConfig {
 
     private int consoleCacheSize;
+    private int consoleMaxLineLength;
+    private ConsoleExecutors.Mode consoleThreadMode;
+    private Duration consoleWriteTimeout;
     private DataSize maxFileSize;
+    private int consoleBatchSize;
+    private Duration consoleFlushInterval;
+    private boolean consoleHistoryEnabled;
+    private String consoleHistoryDirectory;
+    private DataSize consoleHistorySegmentSize;
+    private int consoleHistorySegments;
+    private int websocketOutboundThreads;
+    private int websocketOutboundQueueSize;
+    private Duration websocketSendTimeLimit;
+    private DataSize websocketSendBufferSize;
+    private int consoleMaxPendingFrames;
+    private ConsoleSubscriberGuard.Policy consoleSlowSubscriberPolicy;
+    private Duration metricsInterval;
+    private int consoleMaxBatchCommands;
+    private Duration consoleMaxCommandDelay;
+    private Duration consoleCaptureQuietPeriod;
+    private Duration consoleMaxCaptureTimeout;
+    private int consoleMaxCapturedLines;
+    private DataSize consoleCacheMaxSize;
+    private DataSize consoleMemoryLimit;
+    private boolean consoleDeduplicationEnabled;
+    private String consoleDeduplicationPrefix;
+    private Duration consoleDeduplicationInterval;
+    private int consoleSinkBufferSize;
+    private ConsolePipeline.OverflowPolicy consoleSinkOverflowPolicy;
+    private int consoleSinkThreads;
+    private boolean consoleSyslogEnabled;
+    private String consoleSyslogHost;
+    private int consoleSyslogPort;
+    private boolean consoleCompactEncoding;
+    private int bulkConcurrency;
+    private Duration bulkStaggerDelay;
+    private Duration bulkServerTimeout;
+    private Duration shutdownStopTimeout;
+    private Duration shutdownDeadline;
+    private Duration restartBackoffInitial;
+    private Duration restartBackoffMax;
+    private double restartBackoffMultiplier;
+    private double restartBackoffJitter;
+    private Duration resourceSampleInterval;
+    private int resourceHistorySize;
+    private Duration readinessTimeout;
+    private Duration readinessInterval;
+    private int readinessThreads;
+    private boolean processReattachEnabled;
+    private String runtimeDirectory;
+    private String runtimeJournalFile;
+    private Duration processTermTimeout;
+    private Duration processKillTimeout;
+    private Duration processTreeRefreshInterval;
+    private Duration stopCommandTimeout;
+    private ProcessPriority managerPriority;
 
     public int getConsoleCacheSize() {
         return consoleCacheSize;
@@ -17,6 +78,34 @@ public class AppConfig {
         this.consoleCacheSize = consoleCacheSize;
     }
 
+    public int getConsoleMaxLineLength() {
+        return consoleMaxLineLength;
+    }
+
+    public void setConsoleMaxLineLength(int consoleMaxLineLength) {
+        this.consoleMaxLineLength = consoleMaxLineLength;
+    }
+
+    public ConsoleExecutors.Mode getConsoleThreadMode() {
+        return consoleThreadMode;
+    }
+
+    public void setConsoleThreadMode(ConsoleExecutors.Mode consoleThreadMode) {
+        this.consoleThreadMode = consoleThreadMode;
+    }
+
+    public Duration getConsoleWriteTimeout() {
+        return consoleWriteTimeout;
+    }
+
+    public long getConsoleWriteTimeoutMillis() {
+        return consoleWriteTimeout == null ? 0 : consoleWriteTimeout.toMillis();
+    }
+
+    public void setConsoleWriteTimeout(Duration consoleWriteTimeout) {
+        this.consoleWriteTimeout = consoleWriteTimeout;
+    }
+
     public DataSize getMaxFileSize() {
         return maxFileSize;
     }
@@ -28,4 +117,508 @@ public class AppConfig {
     public void setMaxFileSize(DataSize maxFileSize) {
         this.maxFileSize = maxFileSize;
     }
+
+    public int getConsoleBatchSize() {
+        return consoleBatchSize;
+    }
+
+    public void setConsoleBatchSize(int consoleBatchSize) {
+        this.consoleBatchSize = consoleBatchSize;
+    }
+
+    public Duration getConsoleFlushInterval() {
+        return consoleFlushInterval;
+    }
+
+    public long getConsoleFlushIntervalMillis() {
+        return consoleFlushInterval == null ? 0 : consoleFlushInterval.toMillis();
+    }
+
+    public void setConsoleFlushInterval(Duration consoleFlushInterval) {
+        this.consoleFlushInterval = consoleFlushInterval;
+    }
+
+    public boolean isConsoleHistoryEnabled() {
+        return consoleHistoryEnabled;
+    }
+
+    public void setConsoleHistoryEnabled(boolean consoleHistoryEnabled) {
+        this.consoleHistoryEnabled = consoleHistoryEnabled;
+    }
+
+    public String getConsoleHistoryDirectory() {
+        return consoleHistoryDirectory;
+    }
+
+    public void setConsoleHistoryDirectory(String consoleHistoryDirectory) {
+        this.consoleHistoryDirectory = consoleHistoryDirectory;
+    }
+
+    public DataSize getConsoleHistorySegmentSize() {
+        return consoleHistorySegmentSize;
+    }
+
+    public long getConsoleHistorySegmentSizeBytes() {
+        return consoleHistorySegmentSize.toBytes();
+    }
+
+    public void setConsoleHistorySegmentSize(DataSize consoleHistorySegmentSize) {
+        this.consoleHistorySegmentSize = consoleHistorySegmentSize;
+    }
+
+    public int getConsoleHistorySegments() {
+        return consoleHistorySegments;
+    }
+
+    public void setConsoleHistorySegments(int consoleHistorySegments) {
+        this.consoleHistorySegments = consoleHistorySegments;
+    }
+
+    public int getWebsocketOutboundThreads() {
+        return websocketOutboundThreads;
+    }
+
+    public void setWebsocketOutboundThreads(int websocketOutboundThreads) {
+        this.websocketOutboundThreads = websocketOutboundThreads;
+    }
+
+    public int getWebsocketOutboundQueueSize() {
+        return websocketOutboundQueueSize;
+    }
+
+    public void setWebsocketOutboundQueueSize(int websocketOutboundQueueSize) {
+        this.websocketOutboundQueueSize = websocketOutboundQueueSize;
+    }
+
+    public Duration getWebsocketSendTimeLimit() {
+        return websocketSendTimeLimit;
+    }
+
+    public void setWebsocketSendTimeLimit(Duration websocketSendTimeLimit) {
+        this.websocketSendTimeLimit = websocketSendTimeLimit;
+    }
+
+    public DataSize getWebsocketSendBufferSize() {
+        return websocketSendBufferSize;
+    }
+
+    public void setWebsocketSendBufferSize(DataSize websocketSendBufferSize) {
+        this.websocketSendBufferSize = websocketSendBufferSize;
+    }
+
+    public int getConsoleMaxPendingFrames() {
+        return consoleMaxPendingFrames;
+    }
+
+    public void setConsoleMaxPendingFrames(int consoleMaxPendingFrames) {
+        this.consoleMaxPendingFrames = consoleMaxPendingFrames;
+    }
+
+    public ConsoleSubscriberGuard.Policy getConsoleSlowSubscriberPolicy() {
+        return consoleSlowSubscriberPolicy;
+    }
+
+    public void setConsoleSlowSubscriberPolicy(ConsoleSubscriberGuard.Policy consoleSlowSubscriberPolicy) {
+        this.consoleSlowSubscriberPolicy = consoleSlowSubscriberPolicy;
+    }
+
+    public Duration getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public long getMetricsIntervalMillis() {
+        return metricsInterval == null ? 0 : metricsInterval.toMillis();
+    }
+
+    public void setMetricsInterval(Duration metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    public int getConsoleMaxBatchCommands() {
+        return consoleMaxBatchCommands;
+    }
+
+    public void setConsoleMaxBatchCommands(int consoleMaxBatchCommands) {
+        this.consoleMaxBatchCommands = consoleMaxBatchCommands;
+    }
+
+    public Duration getConsoleMaxCommandDelay() {
+        return consoleMaxCommandDelay;
+    }
+
+    public long getConsoleMaxCommandDelayMillis() {
+        return consoleMaxCommandDelay == null ? 0 : consoleMaxCommandDelay.toMillis();
+    }
+
+    public void setConsoleMaxCommandDelay(Duration consoleMaxCommandDelay) {
+        this.consoleMaxCommandDelay = consoleMaxCommandDelay;
+    }
+
+    public Duration getConsoleCaptureQuietPeriod() {
+        return consoleCaptureQuietPeriod;
+    }
+
+    public long getConsoleCaptureQuietPeriodMillis() {
+        return consoleCaptureQuietPeriod == null ? 0 : consoleCaptureQuietPeriod.toMillis();
+    }
+
+    public void setConsoleCaptureQuietPeriod(Duration consoleCaptureQuietPeriod) {
+        this.consoleCaptureQuietPeriod = consoleCaptureQuietPeriod;
+    }
+
+    public Duration getConsoleMaxCaptureTimeout() {
+        return consoleMaxCaptureTimeout;
+    }
+
+    public long getConsoleMaxCaptureTimeoutMillis() {
+        return consoleMaxCaptureTimeout == null ? 0 : consoleMaxCaptureTimeout.toMillis();
+    }
+
+    public void setConsoleMaxCaptureTimeout(Duration consoleMaxCaptureTimeout) {
+        this.consoleMaxCaptureTimeout = consoleMaxCaptureTimeout;
+    }
+
+    public int getConsoleMaxCapturedLines() {
+        return consoleMaxCapturedLines;
+    }
+
+    public void setConsoleMaxCapturedLines(int consoleMaxCapturedLines) {
+        this.consoleMaxCapturedLines = consoleMaxCapturedLines;
+    }
+
+    public DataSize getConsoleCacheMaxSize() {
+        return consoleCacheMaxSize;
+    }
+
+    public long getConsoleCacheMaxBytes() {
+        return consoleCacheMaxSize == null ? 0 : consoleCacheMaxSize.toBytes();
+    }
+
+    public void setConsoleCacheMaxSize(DataSize consoleCacheMaxSize) {
+        this.consoleCacheMaxSize = consoleCacheMaxSize;
+    }
+
+    public DataSize getConsoleMemoryLimit() {
+        return consoleMemoryLimit;
+    }
+
+    public long getConsoleMemoryLimitBytes() {
+        return consoleMemoryLimit == null ? 0 : consoleMemoryLimit.toBytes();
+    }
+
+    public void setConsoleMemoryLimit(DataSize consoleMemoryLimit) {
+        this.consoleMemoryLimit = consoleMemoryLimit;
+    }
+
+    public boolean isConsoleDeduplicationEnabled() {
+        return consoleDeduplicationEnabled;
+    }
+
+    public void setConsoleDeduplicationEnabled(boolean consoleDeduplicationEnabled) {
+        this.consoleDeduplicationEnabled = consoleDeduplicationEnabled;
+    }
+
+    public String getConsoleDeduplicationPrefix() {
+        return consoleDeduplicationPrefix;
+    }
+
+    public void setConsoleDeduplicationPrefix(String consoleDeduplicationPrefix) {
+        this.consoleDeduplicationPrefix = consoleDeduplicationPrefix;
+    }
+
+    public Duration getConsoleDeduplicationInterval() {
+        return consoleDeduplicationInterval;
+    }
+
+    public long getConsoleDeduplicationIntervalMillis() {
+        return consoleDeduplicationInterval == null ? 1000 : consoleDeduplicationInterval.toMillis();
+    }
+
+    public void setConsoleDeduplicationInterval(Duration consoleDeduplicationInterval) {
+        this.consoleDeduplicationInterval = consoleDeduplicationInterval;
+    }
+
+    public int getConsoleSinkBufferSize() {
+        return consoleSinkBufferSize;
+    }
+
+    public void setConsoleSinkBufferSize(int consoleSinkBufferSize) {
+        this.consoleSinkBufferSize = consoleSinkBufferSize;
+    }
+
+    public ConsolePipeline.OverflowPolicy getConsoleSinkOverflowPolicy() {
+        return consoleSinkOverflowPolicy;
+    }
+
+    public void setConsoleSinkOverflowPolicy(ConsolePipeline.OverflowPolicy consoleSinkOverflowPolicy) {
+        this.consoleSinkOverflowPolicy = consoleSinkOverflowPolicy;
+    }
+
+    public int getConsoleSinkThreads() {
+        return consoleSinkThreads;
+    }
+
+    public void setConsoleSinkThreads(int consoleSinkThreads) {
+        this.consoleSinkThreads = consoleSinkThreads;
+    }
+
+    public boolean isConsoleSyslogEnabled() {
+        return consoleSyslogEnabled;
+    }
+
+    public void setConsoleSyslogEnabled(boolean consoleSyslogEnabled) {
+        this.consoleSyslogEnabled = consoleSyslogEnabled;
+    }
+
+    public String getConsoleSyslogHost() {
+        return consoleSyslogHost;
+    }
+
+    public void setConsoleSyslogHost(String consoleSyslogHost) {
+        this.consoleSyslogHost = consoleSyslogHost;
+    }
+
+    public int getConsoleSyslogPort() {
+        return consoleSyslogPort;
+    }
+
+    public void setConsoleSyslogPort(int consoleSyslogPort) {
+        this.consoleSyslogPort = consoleSyslogPort;
+    }
+
+    public boolean isConsoleCompactEncoding() {
+        return consoleCompactEncoding;
+    }
+
+    public void setConsoleCompactEncoding(boolean consoleCompactEncoding) {
+        this.consoleCompactEncoding = consoleCompactEncoding;
+    }
+
+    public int getBulkConcurrency() {
+        return bulkConcurrency;
+    }
+
+    public void setBulkConcurrency(int bulkConcurrency) {
+        this.bulkConcurrency = bulkConcurrency;
+    }
+
+    public Duration getBulkStaggerDelay() {
+        return bulkStaggerDelay;
+    }
+
+    public long getBulkStaggerDelayMillis() {
+        return bulkStaggerDelay == null ? 0 : bulkStaggerDelay.toMillis();
+    }
+
+    public void setBulkStaggerDelay(Duration bulkStaggerDelay) {
+        this.bulkStaggerDelay = bulkStaggerDelay;
+    }
+
+    public Duration getBulkServerTimeout() {
+        return bulkServerTimeout;
+    }
+
+    public long getBulkServerTimeoutMillis() {
+        return bulkServerTimeout == null ? 0 : bulkServerTimeout.toMillis();
+    }
+
+    public void setBulkServerTimeout(Duration bulkServerTimeout) {
+        this.bulkServerTimeout = bulkServerTimeout;
+    }
+
+    public Duration getShutdownStopTimeout() {
+        return shutdownStopTimeout;
+    }
+
+    public long getShutdownStopTimeoutMillis() {
+        return shutdownStopTimeout == null ? 0 : shutdownStopTimeout.toMillis();
+    }
+
+    public void setShutdownStopTimeout(Duration shutdownStopTimeout) {
+        this.shutdownStopTimeout = shutdownStopTimeout;
+    }
+
+    public Duration getShutdownDeadline() {
+        return shutdownDeadline;
+    }
+
+    public long getShutdownDeadlineMillis() {
+        return shutdownDeadline == null ? 0 : shutdownDeadline.toMillis();
+    }
+
+    public void setShutdownDeadline(Duration shutdownDeadline) {
+        this.shutdownDeadline = shutdownDeadline;
+    }
+
+    public Duration getRestartBackoffInitial() {
+        return restartBackoffInitial;
+    }
+
+    public long getRestartBackoffInitialMillis() {
+        return restartBackoffInitial == null ? 0 : restartBackoffInitial.toMillis();
+    }
+
+    public void setRestartBackoffInitial(Duration restartBackoffInitial) {
+        this.restartBackoffInitial = restartBackoffInitial;
+    }
+
+    public Duration getRestartBackoffMax() {
+        return restartBackoffMax;
+    }
+
+    public long getRestartBackoffMaxMillis() {
+        return restartBackoffMax == null ? 0 : restartBackoffMax.toMillis();
+    }
+
+    public void setRestartBackoffMax(Duration restartBackoffMax) {
+        this.restartBackoffMax = restartBackoffMax;
+    }
+
+    public double getRestartBackoffMultiplier() {
+        return restartBackoffMultiplier;
+    }
+
+    public void setRestartBackoffMultiplier(double restartBackoffMultiplier) {
+        this.restartBackoffMultiplier = restartBackoffMultiplier;
+    }
+
+    public double getRestartBackoffJitter() {
+        return restartBackoffJitter;
+    }
+
+    public void setRestartBackoffJitter(double restartBackoffJitter) {
+        this.restartBackoffJitter = restartBackoffJitter;
+    }
+
+    public Duration getResourceSampleInterval() {
+        return resourceSampleInterval;
+    }
+
+    public long getResourceSampleIntervalMillis() {
+        return resourceSampleInterval == null ? 0 : resourceSampleInterval.toMillis();
+    }
+
+    public void setResourceSampleInterval(Duration resourceSampleInterval) {
+        this.resourceSampleInterval = resourceSampleInterval;
+    }
+
+    public int getResourceHistorySize() {
+        return resourceHistorySize;
+    }
+
+    public void setResourceHistorySize(int resourceHistorySize) {
+        this.resourceHistorySize = resourceHistorySize;
+    }
+
+    public Duration getReadinessTimeout() {
+        return readinessTimeout;
+    }
+
+    public long getReadinessTimeoutMillis() {
+        return readinessTimeout == null ? 0 : readinessTimeout.toMillis();
+    }
+
+    public void setReadinessTimeout(Duration readinessTimeout) {
+        this.readinessTimeout = readinessTimeout;
+    }
+
+    public Duration getReadinessInterval() {
+        return readinessInterval;
+    }
+
+    public long getReadinessIntervalMillis() {
+        return readinessInterval == null ? 0 : readinessInterval.toMillis();
+    }
+
+    public void setReadinessInterval(Duration readinessInterval) {
+        this.readinessInterval = readinessInterval;
+    }
+
+    public int getReadinessThreads() {
+        return readinessThreads;
+    }
+
+    public void setReadinessThreads(int readinessThreads) {
+        this.readinessThreads = readinessThreads;
+    }
+
+    public boolean isProcessReattachEnabled() {
+        return processReattachEnabled;
+    }
+
+    public void setProcessReattachEnabled(boolean processReattachEnabled) {
+        this.processReattachEnabled = processReattachEnabled;
+    }
+
+    public String getRuntimeDirectory() {
+        return runtimeDirectory;
+    }
+
+    public void setRuntimeDirectory(String runtimeDirectory) {
+        this.runtimeDirectory = runtimeDirectory;
+    }
+
+    public String getRuntimeJournalFile() {
+        return runtimeJournalFile;
+    }
+
+    public void setRuntimeJournalFile(String runtimeJournalFile) {
+        this.runtimeJournalFile = runtimeJournalFile;
+    }
+
+    public Duration getProcessTermTimeout() {
+        return processTermTimeout;
+    }
+
+    public long getProcessTermTimeoutMillis() {
+        return processTermTimeout == null ? 0 : processTermTimeout.toMillis();
+    }
+
+    public void setProcessTermTimeout(Duration processTermTimeout) {
+        this.processTermTimeout = processTermTimeout;
+    }
+
+    public Duration getProcessKillTimeout() {
+        return processKillTimeout;
+    }
+
+    public long getProcessKillTimeoutMillis() {
+        return processKillTimeout == null ? 0 : processKillTimeout.toMillis();
+    }
+
+    public void setProcessKillTimeout(Duration processKillTimeout) {
+        this.processKillTimeout = processKillTimeout;
+    }
+
+    public Duration getProcessTreeRefreshInterval() {
+        return processTreeRefreshInterval;
+    }
+
+    public long getProcessTreeRefreshIntervalMillis() {
+        return processTreeRefreshInterval == null ? 0 : processTreeRefreshInterval.toMillis();
+    }
+
+    public void setProcessTreeRefreshInterval(Duration processTreeRefreshInterval) {
+        this.processTreeRefreshInterval = processTreeRefreshInterval;
+    }
+
+    public Duration getStopCommandTimeout() {
+        return stopCommandTimeout;
+    }
+
+    public long getStopCommandTimeoutMillis() {
+        return stopCommandTimeout == null ? 0 : stopCommandTimeout.toMillis();
+    }
+
+    public void setStopCommandTimeout(Duration stopCommandTimeout) {
+        this.stopCommandTimeout = stopCommandTimeout;
+    }
+
+    public ProcessPriority getManagerPriority() {
+        return managerPriority;
+    }
+
+    public void setManagerPriority(ProcessPriority managerPriority) {
+        this.managerPriority = managerPriority;
+    }
 }
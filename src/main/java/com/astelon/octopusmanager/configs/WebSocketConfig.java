@@ -1,15 +1,30 @@
 package com.astelon.octopusmanager.configs;
 
+import com.astelon.octopusmanager.utils.ConsoleSubscriberGuard;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final AppConfig appConfig;
+
+    public WebSocketConfig(AppConfig appConfig) {
+        this.appConfig = appConfig;
+    }
+
+    @Bean
+    public ConsoleSubscriberGuard consoleSubscriberGuard() {
+        return new ConsoleSubscriberGuard(appConfig.getConsoleMaxPendingFrames(), appConfig.getConsoleSlowSubscriberPolicy());
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/api/websocket");
@@ -20,4 +35,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.enableSimpleBroker("/topic");
         registry.setApplicationDestinationPrefixes("/app");
     }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        int threads = Math.max(1, appConfig.getWebsocketOutboundThreads());
+        registration.taskExecutor()
+                .corePoolSize(threads)
+                .maxPoolSize(threads)
+                .queueCapacity(appConfig.getWebsocketOutboundQueueSize());
+        registration.interceptors(consoleSubscriberGuard());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit((int) appConfig.getWebsocketSendTimeLimit().toMillis())
+                .setSendBufferSizeLimit((int) appConfig.getWebsocketSendBufferSize().toBytes())
+                .addDecoratorFactory(consoleSubscriberGuard());
+    }
 }
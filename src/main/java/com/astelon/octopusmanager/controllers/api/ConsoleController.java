@@ -1,22 +1,44 @@
 package com.astelon.octopusmanager.controllers.api;
 
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.CommandOutput;
+import com.astelon.octopusmanager.data.CommandRequest;
+import com.astelon.octopusmanager.data.ConsoleCommand;
+import com.astelon.octopusmanager.data.ConsoleLines;
+import com.astelon.octopusmanager.data.ConsoleWatchRequest;
+import com.astelon.octopusmanager.data.MultiplexedLines;
 import com.astelon.octopusmanager.managers.ConsoleManager;
+import com.astelon.octopusmanager.managers.ConsoleWatchManager;
+import com.astelon.octopusmanager.utils.CompactConsoleEncoder;
+import com.astelon.octopusmanager.utils.LineFilter;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 @RestController
 @RequestMapping("/api")
 public class ConsoleController {
 
     private final ConsoleManager consoleManager;
+    private final ConsoleWatchManager consoleWatchManager;
+    private final AppConfig appConfig;
 
-    public ConsoleController(ConsoleManager consoleManager) {
+    public ConsoleController(ConsoleManager consoleManager, ConsoleWatchManager consoleWatchManager,
+                             AppConfig appConfig) {
         this.consoleManager = consoleManager;
+        this.consoleWatchManager = consoleWatchManager;
+        this.appConfig = appConfig;
     }
 
     @GetMapping("/server/{serverName}/console")
@@ -24,6 +46,39 @@ public class ConsoleController {
         return consoleManager.getConsoleText(serverName);
     }
 
+    @GetMapping(value = "/server/{serverName}/console", params = {"since", "format!=compact"})
+    public ConsoleLines getConsoleSince(@PathVariable String serverName, @RequestParam long since,
+                                        @RequestParam(required = false) String epoch) {
+        if (since < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The since parameter cannot be negative.");
+        return consoleManager.getConsoleTextAfter(serverName, epoch, since);
+    }
+
+    @GetMapping(value = "/server/{serverName}/console", params = "format=compact",
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] getCompactConsole(@PathVariable String serverName, @RequestParam(defaultValue = "0") long since,
+                                    @RequestParam(required = false) String epoch) {
+        if (since < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The since parameter cannot be negative.");
+        return CompactConsoleEncoder.encode(consoleManager.getConsoleTextAfter(serverName, epoch, since));
+    }
+
+    @GetMapping("/server/{serverName}/console/history")
+    public ConsoleLines getConsoleHistory(@PathVariable String serverName,
+                                          @RequestParam(defaultValue = "0") long before,
+                                          @RequestParam(defaultValue = "100") int limit) {
+        if (limit <= 0 || limit > 1000)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The limit must be between 1 and 1000.");
+        return consoleManager.getConsoleHistory(serverName, before, limit);
+    }
+
+    @SubscribeMapping("/console/{serverName}")
+    public ConsoleLines replayConsole(@DestinationVariable String serverName,
+                                      @Header(value = "since", defaultValue = "0") long since,
+                                      @Header(value = "epoch", required = false) String epoch) {
+        return consoleManager.getConsoleTextAfter(serverName, epoch, Math.max(0, since));
+    }
+
     @PostMapping("/server/{serverName}/console")
     public ResponseEntity<?> sendCommand(@PathVariable String serverName, @RequestBody Map<String, String> requestBody) {
         String command = requestBody.get("command");
@@ -32,4 +87,108 @@ public class ConsoleController {
         consoleManager.writeToConsole(serverName, command);
         return ResponseEntity.noContent().build();
     }
+
+    @PostMapping("/server/{serverName}/console/batch")
+    public ResponseEntity<?> sendCommands(@PathVariable String serverName,
+                                          @RequestBody List<ConsoleCommand> commands) {
+        if (commands == null || commands.isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one command is required.");
+        if (commands.size() > appConfig.getConsoleMaxBatchCommands())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " +
+                    appConfig.getConsoleMaxBatchCommands() + " commands can be sent at once.");
+        long maxDelay = appConfig.getConsoleMaxCommandDelayMillis();
+        for (ConsoleCommand command: commands) {
+            if (command == null || command.getCommand() == null || command.getCommand().isBlank())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every command must have a command field.");
+            if (command.getDelay() < 0 || command.getDelay() > maxDelay)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The delay must be between 0 and " +
+                        maxDelay + " ms.");
+        }
+        consoleManager.writeToConsole(serverName, List.copyOf(commands));
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/server/{serverName}/console/execute")
+    public DeferredResult<CommandOutput> executeCommand(@PathVariable String serverName,
+                                                        @RequestBody CommandRequest request) {
+        String command = request.getCommand();
+        if (command == null || command.isBlank())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The command field is required.");
+        Pattern terminator = null;
+        if (request.getTerminator() != null) {
+            try {
+                terminator = Pattern.compile(request.getTerminator());
+            } catch (PatternSyntaxException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The terminator is not a valid regex.");
+            }
+        }
+        long maxTimeout = appConfig.getConsoleMaxCaptureTimeoutMillis();
+        long timeout = request.getTimeout() == null ? maxTimeout : request.getTimeout();
+        if (timeout <= 0 || timeout > maxTimeout)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The timeout must be between 1 and " +
+                    maxTimeout + " ms.");
+        long quietPeriod = request.getQuietPeriod() == null ? appConfig.getConsoleCaptureQuietPeriodMillis() :
+                request.getQuietPeriod();
+        if (quietPeriod < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The quiet period cannot be negative.");
+        // The capture always ends by its own timeout, the extra second only guards against a lost completion.
+        DeferredResult<CommandOutput> result = new DeferredResult<>(timeout + 1000);
+        consoleManager.executeCommand(serverName, command, terminator, quietPeriod, timeout)
+                .whenComplete((output, e) -> {
+                    if (e != null)
+                        result.setErrorResult(e);
+                    else
+                        result.setResult(output);
+                });
+        return result;
+    }
+
+    // The client picks the watch id and subscribes to /topic/consoles/{watchId} before calling this, so no line is
+    // lost between the snapshot and the stream.
+    @PutMapping("/consoles/watch/{watchId}")
+    public MultiplexedLines watchConsoles(@PathVariable String watchId, @RequestBody ConsoleWatchRequest request) {
+        if (!watchId.matches("[A-Za-z0-9-]{16,64}"))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The watch id must have 16 to 64 letters, " +
+                    "digits or dashes.");
+        List<String> servers = request.getServers();
+        if (servers == null || servers.isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one server is required.");
+        Pattern pattern = null;
+        if (request.getFilter() != null && !request.getFilter().isEmpty()) {
+            if (request.getFilter().length() > LineFilter.MAX_PATTERN_LENGTH)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The filter cannot be longer than " +
+                        LineFilter.MAX_PATTERN_LENGTH + " characters.");
+            try {
+                pattern = Pattern.compile(request.getFilter());
+            } catch (PatternSyntaxException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The filter is not a valid regex.");
+            }
+        }
+        LineFilter.Level level = null;
+        if (request.getLevel() != null && !request.getLevel().isEmpty()) {
+            try {
+                level = LineFilter.parseLevel(request.getLevel());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The level is invalid.");
+            }
+        }
+        LineFilter filter = new LineFilter(pattern, level);
+        // The watch is registered first and streams the lines after the last ones in the snapshot, so lines printed
+        // while the snapshot is taken are neither lost nor sent twice.
+        consoleWatchManager.watch(watchId, servers, filter);
+        try {
+            MultiplexedLines snapshot = consoleManager.getConsoleSnapshot(servers, filter);
+            consoleWatchManager.start(watchId, snapshot.getLastSequences());
+            return snapshot;
+        } catch (RuntimeException e) {
+            consoleWatchManager.unwatch(watchId);
+            throw e;
+        }
+    }
+
+    @DeleteMapping("/consoles/watch/{watchId}")
+    public ResponseEntity<?> unwatchConsoles(@PathVariable String watchId) {
+        consoleWatchManager.unwatch(watchId);
+        return ResponseEntity.noContent().build();
+    }
 }
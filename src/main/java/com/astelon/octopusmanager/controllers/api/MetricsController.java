@@ -0,0 +1,55 @@
+package com.astelon.octopusmanager.controllers.api;
+
+import com.astelon.octopusmanager.data.ConsoleMetrics;
+import com.astelon.octopusmanager.data.MetricsReport;
+import com.astelon.octopusmanager.data.ResourceSamples;
+import com.astelon.octopusmanager.data.StartupStats;
+import com.astelon.octopusmanager.managers.MetricsManager;
+import com.astelon.octopusmanager.managers.ReadinessManager;
+import com.astelon.octopusmanager.managers.ResourceManager;
+import com.astelon.octopusmanager.managers.ServerManager;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+public class MetricsController {
+
+    private final MetricsManager metricsManager;
+    private final ResourceManager resourceManager;
+    private final ReadinessManager readinessManager;
+    private final ServerManager serverManager;
+
+    public MetricsController(MetricsManager metricsManager, ResourceManager resourceManager,
+                             ReadinessManager readinessManager, ServerManager serverManager) {
+        this.metricsManager = metricsManager;
+        this.resourceManager = resourceManager;
+        this.readinessManager = readinessManager;
+        this.serverManager = serverManager;
+    }
+
+    @GetMapping("/metrics")
+    public MetricsReport getMetrics() {
+        return metricsManager.getMetrics();
+    }
+
+    @GetMapping("/server/{serverName}/metrics")
+    public ConsoleMetrics getServerMetrics(@PathVariable String serverName) {
+        return metricsManager.getMetrics(serverName);
+    }
+
+    @GetMapping("/server/{serverName}/resources")
+    public ResourceSamples getServerResources(@PathVariable String serverName,
+                                              @RequestParam(defaultValue = "0") long since) {
+        return resourceManager.getSamples(serverName, since);
+    }
+
+    @GetMapping("/server/{serverName}/startup")
+    public StartupStats getServerStartup(@PathVariable String serverName) {
+        serverManager.getServerStatus(serverName);
+        return readinessManager.getStartupStats(serverName);
+    }
+}
@@ -1,8 +1,11 @@
 package com.astelon.octopusmanager.controllers.api;
 
+import com.astelon.octopusmanager.data.BulkOperation;
+import com.astelon.octopusmanager.data.BulkRequest;
 import com.astelon.octopusmanager.data.PartialServerInfo;
 import com.astelon.octopusmanager.data.ServerInfo;
 import com.astelon.octopusmanager.data.Server;
+import com.astelon.octopusmanager.managers.BulkOperationManager;
 import com.astelon.octopusmanager.managers.ServerManager;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,9 +17,11 @@ import java.util.List;
 public class ServerController {
 
     private final ServerManager serverManager;
+    private final BulkOperationManager bulkOperationManager;
 
-    public ServerController(ServerManager serverManager) {
+    public ServerController(ServerManager serverManager, BulkOperationManager bulkOperationManager) {
         this.serverManager = serverManager;
+        this.bulkOperationManager = bulkOperationManager;
     }
 
     @GetMapping("/servers")
@@ -75,4 +80,24 @@ public class ServerController {
         serverManager.restartServer(serverName);
         return ResponseEntity.noContent().build();
     }
+
+    @PostMapping("/servers/bulk/start")
+    public ResponseEntity<BulkOperation> startServers(@RequestBody BulkRequest requestBody) {
+        return ResponseEntity.accepted().body(bulkOperationManager.submit(BulkOperation.Action.START, requestBody));
+    }
+
+    @PostMapping("/servers/bulk/stop")
+    public ResponseEntity<BulkOperation> stopServers(@RequestBody BulkRequest requestBody) {
+        return ResponseEntity.accepted().body(bulkOperationManager.submit(BulkOperation.Action.STOP, requestBody));
+    }
+
+    @PostMapping("/servers/bulk/restart")
+    public ResponseEntity<BulkOperation> restartServers(@RequestBody BulkRequest requestBody) {
+        return ResponseEntity.accepted().body(bulkOperationManager.submit(BulkOperation.Action.RESTART, requestBody));
+    }
+
+    @GetMapping("/servers/bulk/{operationId}")
+    public BulkOperation getBulkOperation(@PathVariable String operationId) {
+        return bulkOperationManager.getOperation(operationId);
+    }
 }
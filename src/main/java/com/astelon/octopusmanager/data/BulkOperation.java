@@ -0,0 +1,75 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+public class BulkOperation {
+
+    private final String id;
+    private final Action action;
+    private final List<String> servers;
+    private final int concurrency;
+    private final long staggerDelay;
+    private final Map<String, BulkProgress> progress;
+    private volatile boolean finished;
+    private volatile long finishTime;
+
+    // The servers are in the order the operation goes through them.
+    public BulkOperation(String id, Action action, List<String> servers, int concurrency, long staggerDelay) {
+        this.id = id;
+        this.action = action;
+        this.servers = List.copyOf(servers);
+        this.concurrency = concurrency;
+        this.staggerDelay = staggerDelay;
+        progress = new ConcurrentHashMap<>();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public List<String> getServers() {
+        return servers;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public long getStaggerDelay() {
+        return staggerDelay;
+    }
+
+    public List<BulkProgress> getProgress() {
+        return servers.stream().map(progress::get).collect(Collectors.toList());
+    }
+
+    public void setProgress(BulkProgress serverProgress) {
+        progress.put(serverProgress.getServer(), serverProgress);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void finish() {
+        finishTime = System.currentTimeMillis();
+        finished = true;
+    }
+
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    public enum Action {
+        START,
+        STOP,
+        RESTART
+    }
+}
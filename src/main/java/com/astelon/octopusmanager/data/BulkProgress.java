@@ -0,0 +1,54 @@
+package com.astelon.octopusmanager.data;
+
+public class BulkProgress {
+
+    private final String operationId;
+    private final String server;
+    private final State state;
+    private final String message;
+    private final int completed;
+    private final int total;
+
+    public BulkProgress(String operationId, String server, State state, String message, int completed, int total) {
+        this.operationId = operationId;
+        this.server = server;
+        this.state = state;
+        this.message = message;
+        this.completed = completed;
+        this.total = total;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public enum State {
+        PENDING,
+        RUNNING,
+        DONE,
+        SKIPPED,
+        FAILED,
+        // Sent once, without a server, when the whole operation is over.
+        FINISHED
+    }
+}
@@ -0,0 +1,43 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+public class BulkRequest {
+
+    private List<String> servers;
+    private String group;
+    private Integer concurrency;
+    private Long staggerDelay;
+
+    public List<String> getServers() {
+        return servers;
+    }
+
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Long getStaggerDelay() {
+        return staggerDelay;
+    }
+
+    public void setStaggerDelay(Long staggerDelay) {
+        this.staggerDelay = staggerDelay;
+    }
+}
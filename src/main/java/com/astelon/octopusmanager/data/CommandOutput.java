@@ -0,0 +1,30 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+public class CommandOutput {
+
+    private final List<String> lines;
+    private final Reason reason;
+
+    public CommandOutput(List<String> lines, Reason reason) {
+        this.lines = lines;
+        this.reason = reason;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public enum Reason {
+        TERMINATOR,
+        QUIET,
+        TIMEOUT,
+        LIMIT,
+        STOPPED
+    }
+}
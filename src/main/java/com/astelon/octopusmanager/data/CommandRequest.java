@@ -0,0 +1,41 @@
+package com.astelon.octopusmanager.data;
+
+public class CommandRequest {
+
+    private String command;
+    private String terminator;
+    private Long quietPeriod;
+    private Long timeout;
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public String getTerminator() {
+        return terminator;
+    }
+
+    public void setTerminator(String terminator) {
+        this.terminator = terminator;
+    }
+
+    public Long getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    public void setQuietPeriod(Long quietPeriod) {
+        this.quietPeriod = quietPeriod;
+    }
+
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        this.timeout = timeout;
+    }
+}
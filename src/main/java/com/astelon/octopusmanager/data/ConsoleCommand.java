@@ -0,0 +1,23 @@
+package com.astelon.octopusmanager.data;
+
+public class ConsoleCommand {
+
+    private String command;
+    private long delay;
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+}
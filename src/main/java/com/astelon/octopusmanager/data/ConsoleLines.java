@@ -0,0 +1,41 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+// Sequences restart at 1 with every console, that is every run of the manager. The epoch tells the numberings apart,
+// so a client that sees a new one starts over instead of comparing sequences of different runs. Null for lines that
+// are not numbered by a console, such as the history.
+public class ConsoleLines {
+
+    private final String epoch;
+    private final long firstSequence;
+    private final long lastSequence;
+    private final List<String> lines;
+
+    public ConsoleLines(long firstSequence, long lastSequence, List<String> lines) {
+        this(null, firstSequence, lastSequence, lines);
+    }
+
+    public ConsoleLines(String epoch, long firstSequence, long lastSequence, List<String> lines) {
+        this.epoch = epoch;
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+        this.lines = lines;
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+}
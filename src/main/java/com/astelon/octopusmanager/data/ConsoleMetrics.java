@@ -0,0 +1,95 @@
+package com.astelon.octopusmanager.data;
+
+public class ConsoleMetrics {
+
+    private final String serverName;
+    private final double linesPerSecond;
+    private final double bytesPerSecond;
+    private final long linesRead;
+    private final long bytesRead;
+    private final long commandsWritten;
+    private final int cacheSize;
+    private final int cacheCapacity;
+    private final long cacheBytes;
+    private final int subscribers;
+    private final long framesSent;
+    private final long compactFramesSent;
+    private final long sendTimeMicros;
+    private final long sinkDroppedLines;
+
+    public ConsoleMetrics(String serverName, double linesPerSecond, double bytesPerSecond, long linesRead,
+                          long bytesRead, long commandsWritten, int cacheSize, int cacheCapacity, long cacheBytes,
+                          int subscribers, long framesSent, long compactFramesSent, long sendTimeMicros,
+                          long sinkDroppedLines) {
+        this.serverName = serverName;
+        this.linesPerSecond = linesPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.linesRead = linesRead;
+        this.bytesRead = bytesRead;
+        this.commandsWritten = commandsWritten;
+        this.cacheSize = cacheSize;
+        this.cacheCapacity = cacheCapacity;
+        this.cacheBytes = cacheBytes;
+        this.subscribers = subscribers;
+        this.framesSent = framesSent;
+        this.compactFramesSent = compactFramesSent;
+        this.sendTimeMicros = sendTimeMicros;
+        this.sinkDroppedLines = sinkDroppedLines;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public double getLinesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getCommandsWritten() {
+        return commandsWritten;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    public int getSubscribers() {
+        return subscribers;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getCompactFramesSent() {
+        return compactFramesSent;
+    }
+
+    public long getSendTimeMicros() {
+        return sendTimeMicros;
+    }
+
+    public long getSinkDroppedLines() {
+        return sinkDroppedLines;
+    }
+}
@@ -0,0 +1,49 @@
+package com.astelon.octopusmanager.data;
+
+public class ConsoleTrigger {
+
+    private String pattern;
+    private boolean regex;
+    private Action action;
+    private String argument;
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public void setRegex(boolean regex) {
+        this.regex = regex;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    public void setArgument(String argument) {
+        this.argument = argument;
+    }
+
+    public enum Action {
+        NOTIFY,
+        COMMAND,
+        STOP,
+        RESTART,
+        KILL
+    }
+}
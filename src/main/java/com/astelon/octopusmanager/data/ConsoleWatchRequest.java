@@ -0,0 +1,34 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+public class ConsoleWatchRequest {
+
+    private List<String> servers;
+    private String filter;
+    private String level;
+
+    public List<String> getServers() {
+        return servers;
+    }
+
+    public void setServers(List<String> servers) {
+        this.servers = servers;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public void setLevel(String level) {
+        this.level = level;
+    }
+}
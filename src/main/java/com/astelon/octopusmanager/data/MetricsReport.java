@@ -0,0 +1,60 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+public class MetricsReport {
+
+    private final List<ConsoleMetrics> consoles;
+    private final int websocketSessions;
+    private final long droppedFrames;
+    private final long droppedLines;
+    private final long disconnectedSessions;
+    private final long consoleMemoryUsed;
+    private final long consoleMemoryLimit;
+    private final long consoleMemoryEvicted;
+
+    public MetricsReport(List<ConsoleMetrics> consoles, int websocketSessions, long droppedFrames, long droppedLines,
+                         long disconnectedSessions, long consoleMemoryUsed, long consoleMemoryLimit,
+                         long consoleMemoryEvicted) {
+        this.consoles = consoles;
+        this.websocketSessions = websocketSessions;
+        this.droppedFrames = droppedFrames;
+        this.droppedLines = droppedLines;
+        this.disconnectedSessions = disconnectedSessions;
+        this.consoleMemoryUsed = consoleMemoryUsed;
+        this.consoleMemoryLimit = consoleMemoryLimit;
+        this.consoleMemoryEvicted = consoleMemoryEvicted;
+    }
+
+    public List<ConsoleMetrics> getConsoles() {
+        return consoles;
+    }
+
+    public int getWebsocketSessions() {
+        return websocketSessions;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public long getDroppedLines() {
+        return droppedLines;
+    }
+
+    public long getDisconnectedSessions() {
+        return disconnectedSessions;
+    }
+
+    public long getConsoleMemoryUsed() {
+        return consoleMemoryUsed;
+    }
+
+    public long getConsoleMemoryLimit() {
+        return consoleMemoryLimit;
+    }
+
+    public long getConsoleMemoryEvicted() {
+        return consoleMemoryEvicted;
+    }
+}
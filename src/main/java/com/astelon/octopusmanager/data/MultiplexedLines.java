@@ -0,0 +1,24 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+import java.util.Map;
+
+public class MultiplexedLines {
+
+    private final List<TaggedLine> lines;
+    private final Map<String, Long> lastSequences;
+
+    public MultiplexedLines(List<TaggedLine> lines, Map<String, Long> lastSequences) {
+        this.lines = lines;
+        this.lastSequences = lastSequences;
+    }
+
+    public List<TaggedLine> getLines() {
+        return lines;
+    }
+
+    // Only set on snapshots, so a client can tell which streamed lines the snapshot already covered.
+    public Map<String, Long> getLastSequences() {
+        return lastSequences;
+    }
+}
@@ -0,0 +1,83 @@
+package com.astelon.octopusmanager.data;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.regex.Pattern;
+
+// Scheduling settings of a server process. The CPU affinity is a list such as "0-3,6", niceness goes from -20 to 19
+// and the I/O priority from 0 to 7 within the REALTIME and BEST_EFFORT classes. Unset values are left to the system.
+public class ProcessPriority {
+
+    private static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+
+    private String cpuAffinity;
+    private Integer niceness;
+    private IoClass ioClass;
+    private Integer ioPriority;
+
+    public String getCpuAffinity() {
+        return cpuAffinity;
+    }
+
+    public void setCpuAffinity(String cpuAffinity) {
+        this.cpuAffinity = cpuAffinity;
+    }
+
+    public Integer getNiceness() {
+        return niceness;
+    }
+
+    public void setNiceness(Integer niceness) {
+        this.niceness = niceness;
+    }
+
+    public IoClass getIoClass() {
+        return ioClass;
+    }
+
+    public void setIoClass(IoClass ioClass) {
+        this.ioClass = ioClass;
+    }
+
+    public Integer getIoPriority() {
+        return ioPriority;
+    }
+
+    public void setIoPriority(Integer ioPriority) {
+        this.ioPriority = ioPriority;
+    }
+
+    public boolean hasCpuAffinity() {
+        return cpuAffinity != null && !cpuAffinity.isBlank();
+    }
+
+    public void validate() {
+        if (hasCpuAffinity()) {
+            if (!CPU_LIST.matcher(cpuAffinity).matches())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid CPU list " + cpuAffinity + ".");
+            for (String range: cpuAffinity.split(",")) {
+                String[] bounds = range.split("-");
+                if (bounds.length == 2 && Integer.parseInt(bounds[0]) > Integer.parseInt(bounds[1]))
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid CPU range " + range + ".");
+            }
+        }
+        if (niceness != null && (niceness < -20 || niceness > 19))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The niceness must be between -20 and 19.");
+        if (ioPriority != null) {
+            if (ioClass != IoClass.REALTIME && ioClass != IoClass.BEST_EFFORT)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Only the REALTIME and BEST_EFFORT I/O classes have priorities.");
+            if (ioPriority < 0 || ioPriority > 7)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The I/O priority must be between 0 and 7.");
+        }
+    }
+
+    // NONE derives the I/O priority from the niceness, which is what processes get by default.
+    public enum IoClass {
+        NONE,
+        REALTIME,
+        BEST_EFFORT,
+        IDLE
+    }
+}
@@ -0,0 +1,122 @@
+package com.astelon.octopusmanager.data;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// How to tell that a started server accepts work. PORT connects to host:port, CONSOLE waits for a line matching the
+// pattern and HTTP expects a 2xx or 3xx answer from a localhost url. Timeout and interval are in milliseconds and
+// fall back to the app settings when they are 0.
+public class ReadinessProbe {
+
+    private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]", "::1");
+
+    private Type type;
+    private String host;
+    private int port;
+    private String pattern;
+    private String url;
+    private long timeout;
+    private long interval;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public void validate() {
+        if (type == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Readiness probes need a type.");
+        if (timeout < 0 || interval < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Probe timeouts cannot be negative.");
+        switch (type) {
+            case PORT:
+                if (port < 1 || port > 65535)
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Port probes need a valid port.");
+                break;
+            case CONSOLE:
+                if (pattern == null || pattern.isEmpty())
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Console probes need a pattern.");
+                try {
+                    Pattern.compile(pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid probe pattern " + pattern +
+                            ".", e);
+                }
+                break;
+            case HTTP:
+                try {
+                    URI uri = new URI(url == null ? "" : url);
+                    if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme()) ||
+                            uri.getHost() == null || !LOCAL_HOSTS.contains(uri.getHost().toLowerCase()))
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                "HTTP probes need a localhost url.");
+                } catch (URISyntaxException e) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid probe url " + url + ".", e);
+                }
+                break;
+        }
+    }
+
+    public enum Type {
+        PORT,
+        CONSOLE,
+        HTTP
+    }
+}
@@ -0,0 +1,26 @@
+package com.astelon.octopusmanager.data;
+
+public class RepeatedLine {
+
+    private final long sequence;
+    private final long repeats;
+    private final boolean finished;
+
+    public RepeatedLine(long sequence, long repeats, boolean finished) {
+        this.sequence = sequence;
+        this.repeats = repeats;
+        this.finished = finished;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getRepeats() {
+        return repeats;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,65 @@
+package com.astelon.octopusmanager.data;
+
+// Samples in columns, one array per metric. CPU is in percent of one core, reads and writes are the bytes since the
+// previous sample.
+public class ResourceSamples {
+
+    private final String server;
+    private final long firstSequence;
+    private final long[] times;
+    private final float[] cpu;
+    private final long[] rss;
+    private final int[] threads;
+    private final int[] fileDescriptors;
+    private final long[] readBytes;
+    private final long[] writeBytes;
+
+    public ResourceSamples(String server, long firstSequence, long[] times, float[] cpu, long[] rss, int[] threads,
+                           int[] fileDescriptors, long[] readBytes, long[] writeBytes) {
+        this.server = server;
+        this.firstSequence = firstSequence;
+        this.times = times;
+        this.cpu = cpu;
+        this.rss = rss;
+        this.threads = threads;
+        this.fileDescriptors = fileDescriptors;
+        this.readBytes = readBytes;
+        this.writeBytes = writeBytes;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public float[] getCpu() {
+        return cpu;
+    }
+
+    public long[] getRss() {
+        return rss;
+    }
+
+    public int[] getThreads() {
+        return threads;
+    }
+
+    public int[] getFileDescriptors() {
+        return fileDescriptors;
+    }
+
+    public long[] getReadBytes() {
+        return readBytes;
+    }
+
+    public long[] getWriteBytes() {
+        return writeBytes;
+    }
+}
@@ -0,0 +1,39 @@
+package com.astelon.octopusmanager.data;
+
+public class RestartCountdown {
+
+    private final int attempt;
+    private final int maxAttempts;
+    private final long delay;
+    private final long restartTime;
+    private final boolean cancelled;
+
+    // The restart time is in epoch milliseconds, clients count down to it themselves.
+    public RestartCountdown(int attempt, int maxAttempts, long delay, long restartTime, boolean cancelled) {
+        this.attempt = attempt;
+        this.maxAttempts = maxAttempts;
+        this.delay = delay;
+        this.restartTime = restartTime;
+        this.cancelled = cancelled;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public long getRestartTime() {
+        return restartTime;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
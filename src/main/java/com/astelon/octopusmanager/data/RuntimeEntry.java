@@ -0,0 +1,44 @@
+package com.astelon.octopusmanager.data;
+
+import java.util.List;
+
+public class RuntimeEntry {
+
+    private long pid;
+    // In epoch milliseconds, together with the pid it tells the process apart from a later one that reused the pid.
+    private long startTime;
+    private List<String> command;
+    private String workingDirectory;
+
+    public long getPid() {
+        return pid;
+    }
+
+    public void setPid(long pid) {
+        this.pid = pid;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public List<String> getCommand() {
+        return command;
+    }
+
+    public void setCommand(List<String> command) {
+        this.command = command;
+    }
+
+    public String getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    public void setWorkingDirectory(String workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+}
@@ -2,6 +2,13 @@ package com.astelon.octopusmanager.data;
 
 import com.astelon.octopusmanager.managers.ConsoleManager;
 import com.astelon.octopusmanager.managers.FileManager;
+import com.astelon.octopusmanager.managers.PriorityManager;
+import com.astelon.octopusmanager.managers.ReadinessManager;
+import com.astelon.octopusmanager.utils.FifoProcess;
+import com.astelon.octopusmanager.utils.ProcessLauncher;
+import com.astelon.octopusmanager.utils.ProcessTerminator;
+import com.astelon.octopusmanager.utils.ProcessTree;
+import com.astelon.octopusmanager.utils.RestartBackoff;
 import com.astelon.octopusmanager.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +18,13 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 public class Server {
 
@@ -20,23 +34,40 @@ public class Server {
     private final FileManager fileManager;
 
     private final String name;
-    private List<String> command;
-    private File workingDirectory;
+    private volatile List<String> command;
+    private volatile File workingDirectory;
 
-    private long timeBetweenCrashes;
-    private int restartAttempts;
-    private long lastCrash;
+    private volatile long timeBetweenCrashes;
+    private volatile int restartAttempts;
+    private volatile String stopCommand;
+    private volatile ReadinessProbe readinessProbe;
+    private volatile ProcessPriority priority;
+    private long lastLaunch;
     private int currentRestartAttempt;
 
-    private Process process;
-    private volatile Status status;
-    private volatile boolean stopped;
-    private volatile boolean restarting;
+    private volatile Process process;
+    private volatile ProcessTree processTree;
+    private volatile CompletableFuture<Void> exitHandled;
+    private volatile CompletableFuture<Boolean> readyFuture;
+    private final AtomicReference<Status> status;
+    private final Object statusLock;
+    // Exits are handled and automatic restarts run on this scheduler rather than on the common pool.
+    private final ScheduledExecutorService lifecycleScheduler;
+    private final RestartBackoff restartBackoff;
+    private final ReadinessManager readinessManager;
+    private final ProcessLauncher processLauncher;
+    private final ProcessTerminator processTerminator;
+    private final PriorityManager priorityManager;
+    private final long stopCommandTimeout;
+    private ScheduledFuture<?> pendingRestart;
+    private long restartId;
 
     private final SimpMessagingTemplate messagingTemplate;
 
     public Server(ConsoleManager consoleManager, FileManager fileManager, String name, ServerInfo serverInfo,
-                  SimpMessagingTemplate messagingTemplate) {
+                  SimpMessagingTemplate messagingTemplate, ScheduledExecutorService lifecycleScheduler,
+                  RestartBackoff restartBackoff, ReadinessManager readinessManager, ProcessLauncher processLauncher,
+                  ProcessTerminator processTerminator, PriorityManager priorityManager, long stopCommandTimeout) {
         this.consoleManager = consoleManager;
         this.fileManager = fileManager;
         this.name = name;
@@ -45,94 +76,397 @@ public class Server {
         this.command = Utils.parseCommand(serverInfo.getCommand());
         this.timeBetweenCrashes = serverInfo.getTimeBetweenCrashes();
         this.restartAttempts = serverInfo.getRestartAttempts();
+        this.stopCommand = serverInfo.getStopCommand();
+        this.readinessProbe = serverInfo.getReadinessProbe();
+        this.priority = serverInfo.getPriority();
         this.messagingTemplate = messagingTemplate;
-        status = Status.OFFLINE;
-        stopped = true;
+        status = new AtomicReference<>(Status.OFFLINE);
+        statusLock = new Object();
+        this.lifecycleScheduler = lifecycleScheduler;
+        this.restartBackoff = restartBackoff;
+        this.readinessManager = readinessManager;
+        this.processLauncher = processLauncher;
+        this.processTerminator = processTerminator;
+        this.priorityManager = priorityManager;
+        this.stopCommandTimeout = stopCommandTimeout;
     }
 
+    // Whether the server has or is about to have a process, so its settings cannot change.
     public boolean isOnline() {
-        return status == Status.ONLINE || status == Status.RESTARTING;
+        Status current = status.get();
+        return current != Status.OFFLINE && current != Status.CRASHED && current != Status.REMOVED;
     }
 
-    public void start() throws IOException {
-        process = new ProcessBuilder(command).redirectErrorStream(true).directory(workingDirectory).start();
-        stopped = false;
-        restarting = false;
-        setStatus(Status.ONLINE);
-        process.onExit().thenAccept(this::processExit);
-        consoleManager.logManagerMessage(name, "Starting server " + name + ".");
-        consoleManager.startConsole(name, process);
+    // Runs the changes to the settings under the status lock, so the server cannot start while they are made. Returns
+    // false without running them when the server is online.
+    public boolean update(Runnable changes) {
+        synchronized (statusLock) {
+            if (isOnline())
+                return false;
+            changes.run();
+            return true;
+        }
+    }
+
+    // Every lifecycle operation first moves the server out of the state it expects with a compare-and-set, so of two
+    // concurrent operations only one goes ahead. Returns false when the server was not in a state that allows it.
+    public boolean start() throws IOException {
+        if (!transition(Status.OFFLINE, Status.STARTING) && !transition(Status.CRASHED, Status.STARTING))
+            return false;
+        cancelRestart();
+        try {
+            launch();
+        } catch (IOException | RuntimeException e) {
+            transition(Status.STARTING, Status.OFFLINE);
+            throw e;
+        }
+        return true;
     }
 
-    public void stop() {
-        if (process != null) {
-            stopped = true;
-            consoleManager.logManagerMessage(name, "Stopping server " + name + ".");
-            process.destroy();
+    // Stopping a crashed server cancels its pending automatic restart.
+    public boolean stop() {
+        if (!transition(Status.READY, Status.STOPPING) && !transition(Status.ONLINE, Status.STOPPING) &&
+                !transition(Status.RESTARTING, Status.STOPPING)) {
+            if (!cancelRestart())
+                return false;
+            consoleManager.logManagerMessage(name, "The automatic restart was cancelled.");
+            return true;
         }
+        consoleManager.logManagerMessage(name, "Stopping server " + name + ".");
+        // Servers with a stop command are asked to shut down through their console instead of getting a signal.
+        String command = stopCommand;
+        if (command != null && !command.isBlank()) {
+            scheduleStopTimeout();
+            consoleManager.writeToConsole(name, command);
+        } else {
+            destroy(false);
+        }
+        return true;
+    }
+
+    // Also works while stopping, to get rid of a process that ignores the stop.
+    public boolean kill() {
+        if (!transition(Status.READY, Status.STOPPING) && !transition(Status.ONLINE, Status.STOPPING) &&
+                !transition(Status.RESTARTING, Status.STOPPING) && status.get() != Status.STOPPING)
+            return false;
+        consoleManager.logManagerMessage(name, "Killing server " + name + ".");
+        destroy(true);
+        return true;
     }
 
-    public void kill() {
-        if (process != null) {
-            stopped = true;
-            consoleManager.logManagerMessage(name, "Killing server " + name + ".");
-            process.destroyForcibly();
+    public boolean restart() {
+        if (!transition(Status.READY, Status.RESTARTING) && !transition(Status.ONLINE, Status.RESTARTING))
+            return false;
+        consoleManager.logManagerMessage(name, "Restarting server " + name + ".");
+        destroy(false);
+        return true;
+    }
+
+    // Only an offline server can be removed, and a removed server can no longer be started.
+    public boolean remove() {
+        if (!transition(Status.OFFLINE, Status.REMOVED) && !transition(Status.CRASHED, Status.REMOVED))
+            return false;
+        cancelRestart();
+        return true;
+    }
+
+    // Takes over the process a previous manager left running for this server, if there is one. The server was
+    // already ready then, so it goes to READY without probing.
+    public boolean reattach() {
+        if (!transition(Status.OFFLINE, Status.STARTING))
+            return false;
+        Process oldProcess;
+        try {
+            oldProcess = processLauncher.reattach(name, command, workingDirectory);
+        } catch (RuntimeException e) {
+            logger.error("Could not reattach to the process of server " + name + ".", e);
+            oldProcess = null;
         }
+        if (oldProcess == null) {
+            transition(Status.STARTING, Status.OFFLINE);
+            return false;
+        }
+        CompletableFuture<Boolean> ready = new CompletableFuture<>();
+        process = oldProcess;
+        readyFuture = ready;
+        consoleManager.logManagerMessage(name, "Reattached to process " + oldProcess.pid() + " of server " + name +
+                ".");
+        transition(Status.STARTING, Status.ONLINE);
+        ready(ready, -1);
+        consoleManager.startConsole(name, oldProcess);
+        watchExit(oldProcess);
+        return true;
     }
 
-    public void restart() {
-        if (process != null) {
-            restarting = true;
-            consoleManager.logManagerMessage(name, "Restarting server " + name + ".");
-            process.destroy();
+    private void launch() throws IOException {
+        long launchNanos = System.nanoTime();
+        lastLaunch = System.currentTimeMillis();
+        ProcessPriority currentPriority = priority;
+        Process newProcess = processLauncher.start(name, priorityManager.getWrapper(currentPriority), command,
+                workingDirectory);
+        CompletableFuture<Boolean> ready = new CompletableFuture<>();
+        process = newProcess;
+        readyFuture = ready;
+        boolean consoleStarted = false;
+        try {
+            consoleManager.logManagerMessage(name, "Starting server " + name + ".");
+            transition(Status.STARTING, Status.ONLINE);
+            // The probe is set up before the console starts, so a console probe sees the first lines.
+            ReadinessProbe probe = readinessProbe;
+            if (probe == null)
+                ready(ready, -1);
+            else
+                readinessManager.watch(name, probe, launchNanos, latency -> ready(ready, latency),
+                        () -> notReady(ready));
+            consoleManager.startConsole(name, newProcess);
+            consoleStarted = true;
+            watchExit(newProcess);
+        } catch (RuntimeException e) {
+            abandon(newProcess, ready, consoleStarted);
+            throw e;
+        }
+        try {
+            lifecycleScheduler.schedule(() -> checkPriority(newProcess, currentPriority),
+                    PriorityManager.CHECK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("The lifecycle scheduler is shut down, not checking the priority of server " + name + ".");
+        }
+    }
+
+    // A launch that failed halfway must not leave its process running untracked, where it would hold the ports and
+    // files of the server while a second start launches it again. The callers expect the server to be STARTING.
+    private void abandon(Process launched, CompletableFuture<Boolean> ready, boolean consoleStarted) {
+        readinessManager.cancel(name);
+        ready.complete(false);
+        processTerminator.kill(new ProcessTree(launched.toHandle()));
+        processLauncher.exited(name, launched);
+        if (consoleStarted)
+            consoleManager.stopConsole(name);
+        process = null;
+        if (!transition(Status.ONLINE, Status.STARTING))
+            transition(Status.READY, Status.STARTING);
+    }
+
+    private void checkPriority(Process launched, ProcessPriority launchedPriority) {
+        for (String problem: priorityManager.verify(launchedPriority, launched.toHandle())) {
+            logger.warn("Server " + name + ": " + problem);
+            consoleManager.logManagerMessage(name, problem);
+        }
+    }
+
+    // The exit is handled once the whole process tree is gone, so a server is never offline or started again while a
+    // process of its previous run still holds its ports and files.
+    private void watchExit(Process newProcess) {
+        ProcessTree tree = processTerminator.track(newProcess.toHandle());
+        processTree = tree;
+        exitHandled = newProcess.onExit().thenComposeAsync(exited -> reap(tree), lifecycleScheduler)
+                .thenAcceptAsync(survivors -> processExit(newProcess, survivors), lifecycleScheduler);
+    }
+
+    // A latency of -1 means the server has no readiness probe.
+    private void ready(CompletableFuture<Boolean> ready, long latency) {
+        if (!transition(Status.ONLINE, Status.READY))
+            return;
+        if (latency >= 0)
+            consoleManager.logManagerMessage(name, "Server " + name + " is ready after " + latency + " ms.");
+        ready.complete(true);
+    }
+
+    private void notReady(CompletableFuture<Boolean> ready) {
+        consoleManager.logManagerMessage(name, "Server " + name + " did not become ready in time.");
+        ready.complete(false);
+    }
+
+    // The stop command may never reach the server, for example while its console is stuck, or be ignored by it. Then
+    // the server is signalled after the stop command timeout, unless its process exited or it is no longer stopping.
+    private void scheduleStopTimeout() {
+        ProcessTree tree = processTree;
+        CompletableFuture<Void> exit = exitHandled;
+        if (stopCommandTimeout <= 0 || tree == null || exit == null)
+            return;
+        try {
+            ScheduledFuture<?> timer = lifecycleScheduler.schedule(() -> {
+                if (processTree != tree || status.get() != Status.STOPPING)
+                    return;
+                consoleManager.logManagerMessage(name, "Server " + name + " did not stop within " +
+                        stopCommandTimeout + " ms of its stop command, terminating it.");
+                destroy(false);
+            }, stopCommandTimeout, TimeUnit.MILLISECONDS);
+            exit.whenComplete((ignored, e) -> timer.cancel(false));
+        } catch (RejectedExecutionException e) {
+            logger.debug("The lifecycle scheduler is shut down, not timing the stop of server " + name + ".");
         }
     }
 
-    private void processExit(Process process) {
+    // Signals the whole process tree. Stopping escalates to a kill after the term timeout.
+    private void destroy(boolean forcibly) {
+        ProcessTree tree = processTree;
+        if (tree == null)
+            return;
+        CompletableFuture<List<ProcessHandle>> survivors = forcibly ? processTerminator.kill(tree) :
+                processTerminator.terminate(tree);
+        survivors.thenAccept(alive -> {
+            if (!alive.isEmpty())
+                consoleManager.logManagerMessage(name, "Processes " + getPids(alive) + " of server " + name +
+                        " are still running after being killed.");
+        });
+    }
+
+    // The process of the server is gone, but it may have left children running, such as the real server started by a
+    // wrapper script. They are stopped the same way.
+    private CompletableFuture<List<ProcessHandle>> reap(ProcessTree tree) {
+        tree.close();
+        readinessManager.cancel(name);
+        CompletableFuture<Boolean> ready = readyFuture;
+        if (ready != null)
+            ready.complete(false);
+        List<ProcessHandle> leftovers = tree.getAlive();
+        if (leftovers.isEmpty())
+            return CompletableFuture.completedFuture(leftovers);
+        consoleManager.logManagerMessage(name, "Stopping the leftover processes " + getPids(leftovers) +
+                " of server " + name + ".");
+        return processTerminator.terminate(tree);
+    }
+
+    private static String getPids(List<ProcessHandle> handles) {
+        return handles.stream().map(handle -> Long.toString(handle.pid())).collect(Collectors.joining(", "));
+    }
+
+    private void processExit(Process exited, List<ProcessHandle> survivors) {
+        if (!survivors.isEmpty()) {
+            logger.error("Processes " + getPids(survivors) + " of server " + name + " could not be stopped.");
+            consoleManager.logManagerMessage(name, "Processes " + getPids(survivors) + " of server " + name +
+                    " could not be stopped.");
+        }
         consoleManager.stopConsole(name);
-        if (restarting) {
-            tryRestart();
+        processLauncher.exited(name, exited);
+        process = null;
+        processTree = null;
+        while (true) {
+            Status current = status.get();
+            switch (current) {
+                case RESTARTING:
+                    if (!survivors.isEmpty()) {
+                        if (transition(Status.RESTARTING, Status.CRASHED)) {
+                            consoleManager.logManagerMessage(name, "The server is not restarted while processes " +
+                                    "of its previous run are still running.");
+                            return;
+                        }
+                    } else if (transition(Status.RESTARTING, Status.STARTING)) {
+                        tryRestart();
+                        return;
+                    }
+                    break;
+                case STOPPING:
+                    if (transition(Status.STOPPING, Status.OFFLINE)) {
+                        consoleManager.logManagerMessage(name, "Server " + name + " shut down.");
+                        return;
+                    }
+                    break;
+                case ONLINE:
+                case READY:
+                    // The exit code of a reattached process is unknown, so its exit doesn't count as a crash.
+                    if (exited instanceof FifoProcess && ((FifoProcess) exited).isReattached()) {
+                        if (transition(current, Status.OFFLINE)) {
+                            consoleManager.logManagerMessage(name, "Server " + name + " shut down. Its exit code " +
+                                    "is unknown since the process was reattached.");
+                            return;
+                        }
+                    } else if (exited.exitValue() == 0) {
+                        if (transition(current, Status.OFFLINE)) {
+                            consoleManager.logManagerMessage(name, "Server " + name + " shut down.");
+                            return;
+                        }
+                    } else if (transition(current, Status.CRASHED)) {
+                        processCrash();
+                        return;
+                    }
+                    break;
+                default:
+                    logger.warn("The process of server " + name + " exited while the server was " + current + ".");
+                    return;
+            }
+        }
+    }
+
+    private void processCrash() {
+        long currentCrash = System.currentTimeMillis();
+        consoleManager.logManagerMessage(name, "Server " + name + " has crashed.");
+        if (restartAttempts <= 0)
+            return;
+        // The window starts at the launch, so the backoff delay before an automatic restart doesn't reset the count.
+        if (currentCrash - lastLaunch < timeBetweenCrashes)
+            currentRestartAttempt++;
+        else
+            currentRestartAttempt = 1;
+        if (currentRestartAttempt > restartAttempts) {
+            consoleManager.logManagerMessage(name, "The server crashed too many times. Automatic restarts " +
+                    "will no longer be attempted.");
             return;
         }
-        int exitValue = process.exitValue();
-        if (exitValue == 0 || stopped) {
-            setStatus(Status.OFFLINE);
-            consoleManager.logManagerMessage(name, "Server " + name + " shut down.");
-        } else {
-            long currentCrash = System.currentTimeMillis();
-            setStatus(Status.CRASHED);
-            consoleManager.logManagerMessage(name, "Server " + name + " has crashed.");
-            if (restartAttempts > 0) {
-                if (currentCrash - lastCrash < timeBetweenCrashes)
-                    currentRestartAttempt++;
-                else
-                    currentRestartAttempt = 1;
-                lastCrash = currentCrash;
-                if (currentRestartAttempt <= restartAttempts) {
-                    consoleManager.logManagerMessage(name, "Attempting restart " + currentRestartAttempt + ".");
-                    tryRestart();
-                } else {
-                    consoleManager.logManagerMessage(name, "The server crashed too many times. Automatic restarts " +
-                            "will no longer be attempted.");
-                }
+        int attempt = currentRestartAttempt;
+        long delay = restartBackoff.getDelay(attempt);
+        synchronized (statusLock) {
+            // A start request may have come in since the crash.
+            if (status.get() != Status.CRASHED)
+                return;
+            long id = ++restartId;
+            try {
+                pendingRestart = lifecycleScheduler.schedule(() -> scheduledRestart(id, attempt), delay,
+                        TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("The lifecycle scheduler is shut down, not restarting server " + name + ".");
+                return;
             }
+            messagingTemplate.convertAndSend("/topic/restarts/" + name, new RestartCountdown(attempt,
+                    restartAttempts, delay, System.currentTimeMillis() + delay, false));
+        }
+        consoleManager.logManagerMessage(name, "Attempting restart " + attempt + " in " + delay + " ms.");
+    }
+
+    private void scheduledRestart(long id, int attempt) {
+        synchronized (statusLock) {
+            // The restart may have been cancelled after this task began.
+            if (pendingRestart == null || restartId != id)
+                return;
+            pendingRestart = null;
+            if (!transition(Status.CRASHED, Status.STARTING))
+                return;
+        }
+        consoleManager.logManagerMessage(name, "Attempting restart " + attempt + ".");
+        tryRestart();
+    }
+
+    private boolean cancelRestart() {
+        synchronized (statusLock) {
+            if (pendingRestart == null)
+                return false;
+            pendingRestart.cancel(false);
+            pendingRestart = null;
+            messagingTemplate.convertAndSend("/topic/restarts/" + name, new RestartCountdown(currentRestartAttempt,
+                    restartAttempts, 0, 0, true));
+            return true;
         }
     }
 
     private void tryRestart() {
-        setStatus(Status.RESTARTING);
         try {
-            start();
-        } catch (IOException e) {
+            launch();
+        } catch (IOException | RuntimeException e) {
             logger.error("Encountered an exception while restarting the process.", e);
             consoleManager.logManagerMessage(name, "The server could not be restarted.");
-            setStatus(Status.CRASHED);
+            transition(Status.STARTING, Status.CRASHED);
         }
     }
 
-    private void setStatus(Status status) {
-        this.status = status;
-        messagingTemplate.convertAndSend("/topic/status/" + name, status.name());
+    // Status messages are sent under the lock so clients get them in the order of the transitions.
+    private boolean transition(Status expected, Status next) {
+        synchronized (statusLock) {
+            if (!status.compareAndSet(expected, next))
+                return false;
+            messagingTemplate.convertAndSend("/topic/status/" + name, next.name());
+            return true;
+        }
     }
 
     public String getName() {
@@ -156,14 +490,58 @@ public class Server {
         this.restartAttempts = restartAttempts;
     }
 
+    public void setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+    }
+
+    public void setReadinessProbe(ReadinessProbe readinessProbe) {
+        this.readinessProbe = readinessProbe;
+    }
+
+    // Applies from the next start.
+    public void setPriority(ProcessPriority priority) {
+        this.priority = priority;
+    }
+
+    // Completes once the exit of the current process has been handled, that is once a stopped server is offline or a
+    // restarted one has its new process. Take it before stopping or restarting the server.
+    public CompletableFuture<Void> getExitFuture() {
+        CompletableFuture<Void> current = exitHandled;
+        return current == null ? CompletableFuture.completedFuture(null) : current;
+    }
+
+    // Null while the server has no process.
+    public ProcessHandle getProcessHandle() {
+        Process current = process;
+        return current == null ? null : current.toHandle();
+    }
+
+    // Null while the server has no process. Holds the descendants found so far, also the ones a process that exited
+    // left behind.
+    public ProcessTree getProcessTree() {
+        return processTree;
+    }
+
+    // Completes with true once the current process passes its readiness probe, or with false when it times out or
+    // the process exits first.
+    public CompletableFuture<Boolean> getReadyFuture() {
+        CompletableFuture<Boolean> current = readyFuture;
+        return current == null ? CompletableFuture.completedFuture(false) : current;
+    }
+
     public Status getStatus() {
-        return status;
+        return status.get();
     }
 
+    // ONLINE servers have a process, READY ones also passed their readiness probe or have none.
     public enum Status {
         ONLINE,
+        READY,
         OFFLINE,
         CRASHED,
-        RESTARTING
+        RESTARTING,
+        STARTING,
+        STOPPING,
+        REMOVED
     }
 }
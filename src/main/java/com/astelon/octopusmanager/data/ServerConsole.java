@@ -1,48 +1,182 @@
 package com.astelon.octopusmanager.data;
 
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.utils.ConsoleBroadcaster;
 import com.astelon.octopusmanager.utils.ConsoleCache;
+import com.astelon.octopusmanager.utils.ConsoleCapture;
+import com.astelon.octopusmanager.utils.ConsoleDeduplicator;
+import com.astelon.octopusmanager.utils.ConsoleHistory;
+import com.astelon.octopusmanager.utils.ConsoleMemoryGovernor;
+import com.astelon.octopusmanager.utils.ConsolePipeline;
+import com.astelon.octopusmanager.utils.ConsoleSink;
+import com.astelon.octopusmanager.utils.ConsoleSinkFactory;
+import com.astelon.octopusmanager.utils.ConsoleReader;
+import com.astelon.octopusmanager.utils.RateCounter;
+import com.astelon.octopusmanager.utils.SerialExecutor;
+import com.astelon.octopusmanager.utils.SyslogSink;
+import com.astelon.octopusmanager.utils.TriggerEngine;
+import com.astelon.octopusmanager.utils.TriggerListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class ServerConsole {
 
     private static final Logger logger = LoggerFactory.getLogger(ServerConsole.class);
 
     private final String serverName;
+    private final String epoch;
+    private final ConsoleBroadcaster broadcaster;
     private final ConsoleCache cache;
+    private final ConsoleMemoryGovernor memoryGovernor;
+    private final ConsoleHistory history;
+    private final ConsolePipeline pipeline;
+    private final ConsoleReader reader;
+    private final ConsoleDeduplicator deduplicator;
+    private final SimpMessagingTemplate messagingTemplate;
 
-    private final ExecutorService readExecutor;
-    private final ExecutorService writeExecutor;
+    // The reader and the trigger matchers are reused for every process, so the read of a new process waits until the
+    // previous one reached the end of its output, which a leftover child of it may still hold open.
+    private final SerialExecutor readExecutor;
+    private final SerialExecutor writeExecutor;
+    private final ScheduledExecutorService scheduler;
 
-    private Process process;
-    private BufferedWriter writer;
+    private final LongAdder commandsWritten;
+    private final List<ConsoleCapture> captures;
+    private final int maxCapturedLines;
+    private final long writeTimeout;
+    // While a write has been blocked for longer than the write timeout, new writes are refused instead of queued.
+    private final Object writeStateLock;
+    private long writeCount;
+    private long activeWrite;
+    private volatile boolean inputStuck;
 
-    public ServerConsole(String serverName, int cacheSize, SimpMessagingTemplate messagingTemplate) {
+    private volatile TriggerEngine triggerEngine;
+    private volatile TriggerListener triggerListener;
+
+    private volatile Process process;
+    private volatile BufferedWriter writer;
+
+    public ServerConsole(String serverName, AppConfig appConfig, SimpMessagingTemplate messagingTemplate,
+                         SimpUserRegistry userRegistry, ScheduledExecutorService flushScheduler, ExecutorService historyExecutor,
+                         Executor readExecutor, Executor writeExecutor, Executor sinkExecutor,
+                         ConsoleMemoryGovernor memoryGovernor, List<ConsoleSinkFactory> sinkFactories) {
         this.serverName = serverName;
-        cache = new ConsoleCache(messagingTemplate, serverName, cacheSize);
-        readExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Read Thread Server " + serverName));
-        writeExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Write Thread Server " + serverName));
+        epoch = UUID.randomUUID().toString();
+        broadcaster = new ConsoleBroadcaster(messagingTemplate, userRegistry, serverName, epoch,
+                appConfig.getConsoleBatchSize(), appConfig.getConsoleFlushIntervalMillis(), flushScheduler,
+                appConfig.isConsoleCompactEncoding());
+        cache = new ConsoleCache(memoryGovernor, appConfig.getConsoleCacheSize(), appConfig.getConsoleCacheMaxBytes());
+        this.memoryGovernor = memoryGovernor;
+        memoryGovernor.register(cache);
+        history = createHistory(appConfig, historyExecutor);
+        pipeline = createPipeline(appConfig, sinkExecutor, sinkFactories);
+        reader = new ConsoleReader(appConfig.getConsoleMaxLineLength());
+        this.messagingTemplate = messagingTemplate;
+        deduplicator = createDeduplicator(appConfig, flushScheduler, readExecutor);
+        this.readExecutor = new SerialExecutor(readExecutor);
+        this.writeExecutor = new SerialExecutor(writeExecutor);
+        scheduler = flushScheduler;
+        commandsWritten = new LongAdder();
+        captures = new CopyOnWriteArrayList<>();
+        maxCapturedLines = appConfig.getConsoleMaxCapturedLines();
+        writeTimeout = appConfig.getConsoleWriteTimeoutMillis();
+        writeStateLock = new Object();
     }
 
     public void processStart(Process process) {
         this.process = process;
         writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
-        startReading();
+        startReading(process);
     }
 
     public List<String> getConsoleText() {
         return cache.getCachedLines();
     }
 
+    // A sequence of another epoch was numbered by an earlier run, so every cached line is returned then.
+    public ConsoleLines getConsoleTextAfter(String sequenceEpoch, long sequence) {
+        if (sequenceEpoch != null && !sequenceEpoch.equals(epoch))
+            sequence = 0;
+        // The cache may not have caught up with lines that a client already received over the websocket.
+        if (sequence > cache.getLastSequence() && sequence <= pipeline.getLastSequence())
+            return new ConsoleLines(epoch, sequence + 1, sequence, List.of());
+        return withEpoch(cache.getLinesAfter(sequence));
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    // Every line up to the last published one that is still kept, so a stream of the lines after that sequence misses
+    // nothing. The cache may not have caught up with the newest lines yet, those come from the pipeline.
+    public ConsoleLines getSnapshot() {
+        long last = pipeline.getLastSequence();
+        ConsoleLines cached = cache.getLinesAfter(0);
+        List<String> lines = new ArrayList<>();
+        long first = cached.getFirstSequence();
+        long next = first;
+        for (String line: cached.getLines()) {
+            if (next > last)
+                break;
+            lines.add(line);
+            next++;
+        }
+        if (next <= last) {
+            ConsoleLines newest = pipeline.getLines(next, last);
+            // The pipeline no longer has the lines right after the cached ones.
+            if (newest.getFirstSequence() != next) {
+                lines.clear();
+                first = newest.getFirstSequence();
+            }
+            lines.addAll(newest.getLines());
+        }
+        if (lines.isEmpty())
+            return new ConsoleLines(epoch, last + 1, last, List.of());
+        return new ConsoleLines(epoch, first, last, lines);
+    }
+
+    private ConsoleLines withEpoch(ConsoleLines lines) {
+        return new ConsoleLines(epoch, lines.getFirstSequence(), lines.getLastSequence(), lines.getLines());
+    }
+
+    public ConsoleLines getHistory(long before, int limit) throws IOException {
+        if (history == null)
+            return new ConsoleLines(1, 0, List.of());
+        return history.getLinesBefore(before, limit);
+    }
+
+    public void flushHistory() {
+        if (history != null)
+            history.flush();
+    }
+
+    public boolean isRunning() {
+        return process != null;
+    }
+
     public void processStop() {
         process = null;
+        stopCaptures();
         try {
             writer.close();
         } catch (IOException e) {
@@ -52,52 +186,309 @@ public class ServerConsole {
         }
     }
 
-    private void startReading() {
-        readExecutor.execute(this::readConsole);
+    private void startReading(Process target) {
+        try {
+            readExecutor.execute(() -> readConsole(target));
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not start reading from the console of server " + serverName + ".", e);
+        }
     }
 
-    private void readConsole() {
+    private void readConsole(Process target) {
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        thread.setName("Read Thread Server " + serverName);
         logger.info("Began reading from the console of server " + serverName + ".");
-        InputStream inputStream = process.getInputStream();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            String line = reader.readLine();
-            while (line != null) {
-                cache.addLine(line);
-                line = reader.readLine();
-            }
+        try (InputStream inputStream = target.getInputStream()) {
+            reader.read(inputStream, this::addProcessLine);
         } catch (IOException e) {
             logger.error("Encountered an exception while reading from console of server " + serverName + ".", e);
             logManagerMessage("The manager has encountered an exception while reading from this console.");
+        } finally {
+            if (deduplicator != null)
+                deduplicator.finish();
+            thread.setName(threadName);
         }
         logger.info("Stopped reading from the console of server " + serverName + ".");
     }
 
+    public ConsoleMetrics getMetrics(int subscribers) {
+        RateCounter linesRead = reader.getLinesRead();
+        RateCounter bytesRead = reader.getBytesRead();
+        return new ConsoleMetrics(serverName, linesRead.getRatePerSecond(), bytesRead.getRatePerSecond(),
+                linesRead.getTotal(), bytesRead.getTotal(), commandsWritten.sum(), cache.getSize(), cache.getCapacity(),
+                cache.getBytes(), subscribers, broadcaster.getFramesSent(), broadcaster.getCompactFramesSent(),
+                broadcaster.getSendTimeMicros(), pipeline.getDroppedLines());
+    }
+
+    public void setTriggers(List<ConsoleTrigger> triggers, TriggerListener listener) {
+        triggerListener = listener;
+        triggerEngine = triggers == null || triggers.isEmpty() ? null : new TriggerEngine(triggers);
+    }
+
+    private void addProcessLine(String line) {
+        if (deduplicator == null)
+            addLine(line);
+        else if (!deduplicator.accept(line))
+            return;
+        for (ConsoleCapture capture: captures)
+            capture.addLine(line);
+        TriggerEngine engine = triggerEngine;
+        if (engine != null)
+            engine.match(line, trigger -> fireTrigger(trigger, line));
+    }
+
+    private void fireTrigger(ConsoleTrigger trigger, String line) {
+        try {
+            triggerListener.triggered(serverName, trigger, line);
+        } catch (RuntimeException e) {
+            logger.error("Could not run the trigger " + trigger.getPattern() + " of server " + serverName + ".", e);
+        }
+    }
+
+    private long addLine(String line) {
+        return pipeline.publish(line);
+    }
+
+    private void lineRepeated(long sequence, String line, long repeats, boolean finished) {
+        messagingTemplate.convertAndSend("/topic/repeats/" + serverName, new RepeatedLine(sequence, repeats, finished));
+        if (finished) {
+            String shortLine = line.length() > 80 ? line.substring(0, 80) + "..." : line;
+            logManagerMessage("The line \"" + shortLine + "\" was repeated " + repeats + " more times.");
+        }
+    }
+
     public void writeMessage(String text) {
-        cache.addLine(text);
-        if (!text.endsWith("\n"))
-            text = text + "\n";
-        String finalText = text;
-        writeExecutor.execute(() -> writeToConsole(finalText));
+        addLine(text);
+        List<String> texts = List.of(withNewLine(text));
+        try {
+            executeWrite(() -> writeToConsole(texts));
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not write to the console of server " + serverName + ".", e);
+        }
+    }
+
+    // The capture starts on the write thread right before the command is written, so it only sees the lines read
+    // after that point. Concurrent captures each receive every line read while they are active.
+    public CompletableFuture<CommandOutput> executeCommand(String command, Pattern terminator, long quietPeriod,
+                                                           long timeout) {
+        ConsoleCapture capture = new ConsoleCapture(terminator, quietPeriod, timeout, maxCapturedLines, scheduler);
+        capture.getResult().whenComplete((output, e) -> captures.remove(capture));
+        addLine(command);
+        List<String> texts = List.of(withNewLine(command));
+        Process target = process;
+        try {
+            executeWrite(() -> {
+                if (process != target) {
+                    capture.complete(CommandOutput.Reason.STOPPED);
+                    return;
+                }
+                captures.add(capture);
+                capture.start();
+                if (!writeToConsole(texts))
+                    capture.complete(CommandOutput.Reason.STOPPED);
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not write to the console of server " + serverName + ".", e);
+            capture.complete(CommandOutput.Reason.STOPPED);
+        }
+        return capture.getResult();
     }
 
-    private void writeToConsole(String text) {
-        if (writer == null)
+    // Consecutive commands without a delay form a burst that is written with a single flush. A delayed command starts
+    // a new burst, which is written once the previous one was written and the delay has passed. The rest of the
+    // commands are dropped if the process stops in the meantime.
+    public void writeMessages(List<ConsoleCommand> commands) {
+        if (commands.isEmpty())
             return;
+        Process target = process;
+        if (commands.get(0).getDelay() > 0)
+            scheduleBurst(commands, 0, target);
+        else
+            writeBurst(commands, 0, target);
+    }
+
+    private void scheduleBurst(List<ConsoleCommand> commands, int start, Process target) {
+        try {
+            scheduler.schedule(() -> writeBurst(commands, start, target), commands.get(start).getDelay(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not schedule the next commands for the console of server " + serverName + ".", e);
+        }
+    }
+
+    private void writeBurst(List<ConsoleCommand> commands, int start, Process target) {
+        if (process != target)
+            return;
+        int end = start + 1;
+        while (end < commands.size() && commands.get(end).getDelay() <= 0)
+            end++;
+        List<String> texts = new ArrayList<>(end - start);
+        for (ConsoleCommand command: commands.subList(start, end)) {
+            addLine(command.getCommand());
+            texts.add(withNewLine(command.getCommand()));
+        }
+        int next = end;
         try {
-            writer.write(text);
-            writer.flush();
+            executeWrite(() -> {
+                if (process == target && writeToConsole(texts) && next < commands.size())
+                    scheduleBurst(commands, next, target);
+            });
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not write to the console of server " + serverName + ".", e);
+        }
+    }
+
+    private String withNewLine(String text) {
+        return text.endsWith("\n") ? text : text + "\n";
+    }
+
+    private void executeWrite(Runnable task) {
+        if (inputStuck)
+            throw new RejectedExecutionException("Server " + serverName + " is not reading its input.");
+        writeExecutor.execute(task);
+    }
+
+    private boolean writeToConsole(List<String> texts) {
+        BufferedWriter current = writer;
+        if (current == null)
+            return false;
+        ScheduledFuture<?> timeout = startWrite();
+        try {
+            for (String text: texts)
+                current.write(text);
+            current.flush();
+            commandsWritten.add(texts.size());
+            return true;
         } catch (IOException e) {
             logger.error("Encountered an exception while writing to the console of server " + serverName + ".", e);
             logManagerMessage("The manager has encountered an exception while writing to this console.");
+            return false;
+        } finally {
+            finishWrite(timeout);
         }
     }
 
+    // Writes block while the pipe to the process is full. Each console writes on a thread of its own, so a process
+    // that stops reading its input only holds up its own commands, and those are dropped once the timeout passes.
+    private ScheduledFuture<?> startWrite() {
+        long id;
+        synchronized (writeStateLock) {
+            id = ++writeCount;
+            activeWrite = id;
+        }
+        if (writeTimeout <= 0)
+            return null;
+        try {
+            return scheduler.schedule(() -> writeTimedOut(id), writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private void writeTimedOut(long id) {
+        synchronized (writeStateLock) {
+            if (activeWrite != id)
+                return;
+            inputStuck = true;
+        }
+        writeExecutor.clear();
+        logger.warn("Server " + serverName + " has not read its input for " + writeTimeout + " ms.");
+        logManagerMessage("The server has not read its input for " + writeTimeout + " ms. Commands are dropped " +
+                "until it does.");
+    }
+
+    private void finishWrite(ScheduledFuture<?> timeout) {
+        if (timeout != null)
+            timeout.cancel(false);
+        boolean wasStuck;
+        synchronized (writeStateLock) {
+            activeWrite = 0;
+            wasStuck = inputStuck;
+            inputStuck = false;
+        }
+        if (wasStuck)
+            logManagerMessage("The server is reading its input again.");
+    }
+
     public void logManagerMessage(String message) {
-        cache.addLine("[OctopusManager] " + message);
+        addLine("[OctopusManager] " + message);
     }
 
     public void shutdown() {
-        readExecutor.shutdownNow();
-        writeExecutor.shutdownNow();
+        writeExecutor.clear();
+        stopCaptures();
+        pipeline.close();
+        memoryGovernor.unregister(cache);
+    }
+
+    private void stopCaptures() {
+        for (ConsoleCapture capture: captures)
+            capture.complete(CommandOutput.Reason.STOPPED);
+    }
+
+    private ConsoleDeduplicator createDeduplicator(AppConfig appConfig, ScheduledExecutorService scheduler,
+                                                   Executor reportExecutor) {
+        if (!appConfig.isConsoleDeduplicationEnabled())
+            return null;
+        Pattern ignoredPrefix = null;
+        String prefix = appConfig.getConsoleDeduplicationPrefix();
+        if (prefix != null && !prefix.isEmpty()) {
+            try {
+                ignoredPrefix = Pattern.compile(prefix);
+            } catch (PatternSyntaxException e) {
+                logger.warn("The console deduplication prefix is not a valid regex, whole lines will be compared.");
+            }
+        }
+        return new ConsoleDeduplicator(ignoredPrefix, appConfig.getConsoleDeduplicationIntervalMillis(), scheduler,
+                new SerialExecutor(reportExecutor), this::addLine, this::lineRepeated);
+    }
+
+    private ConsolePipeline createPipeline(AppConfig appConfig, Executor sinkExecutor,
+                                           List<ConsoleSinkFactory> sinkFactories) {
+        ConsolePipeline pipeline = new ConsolePipeline(serverName, appConfig.getConsoleSinkBufferSize(),
+                appConfig.getConsoleSinkOverflowPolicy(), sinkExecutor);
+        pipeline.addSink("cache", cache);
+        pipeline.addSink("websocket", broadcaster);
+        if (history != null)
+            pipeline.addSink("history", history);
+        if (appConfig.isConsoleSyslogEnabled()) {
+            try {
+                pipeline.addSink("syslog", new SyslogSink(serverName, appConfig.getConsoleSyslogHost(),
+                        appConfig.getConsoleSyslogPort()));
+            } catch (IOException e) {
+                logger.error("Could not open the syslog socket for server " + serverName + ".", e);
+            }
+        }
+        for (ConsoleSinkFactory factory: sinkFactories) {
+            try {
+                ConsoleSink sink = factory.createSink(serverName);
+                if (sink != null)
+                    pipeline.addSink(factory.getName(), sink);
+            } catch (Exception e) {
+                logger.error("Could not create the console sink " + factory.getName() + " for server " + serverName +
+                        ".", e);
+            }
+        }
+        return pipeline;
+    }
+
+    private ConsoleHistory createHistory(AppConfig appConfig, ExecutorService historyExecutor) {
+        if (!appConfig.isConsoleHistoryEnabled())
+            return null;
+        Path root = Path.of(appConfig.getConsoleHistoryDirectory()).toAbsolutePath().normalize();
+        Path directory = root.resolve(serverName).normalize();
+        if (!root.equals(directory.getParent())) {
+            logger.warn("The name of server " + serverName + " cannot be used as a directory, its console history " +
+                    "will not be saved.");
+            return null;
+        }
+        try {
+            return new ConsoleHistory(serverName, directory, appConfig.getConsoleHistorySegmentSizeBytes(),
+                    appConfig.getConsoleHistorySegments(), historyExecutor);
+        } catch (Exception e) {
+            logger.error("Could not open the console history of server " + serverName + ".", e);
+            return null;
+        }
     }
 }
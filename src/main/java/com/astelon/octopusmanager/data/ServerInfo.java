@@ -4,6 +4,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class ServerInfo {
 
@@ -12,6 +14,14 @@ public class ServerInfo {
     private List<String> extraDirectories;
     private long timeBetweenCrashes;
     private int restartAttempts;
+    // Written to the console to stop the server gracefully. Without it the process is sent a termination signal.
+    private String stopCommand;
+    private ReadinessProbe readinessProbe;
+    private ProcessPriority priority;
+    private List<ConsoleTrigger> triggers;
+    private List<String> groups;
+    // Servers that bulk operations start before this one and stop after it.
+    private List<String> dependencies;
 
     public String getCommand() {
         return command;
@@ -53,10 +63,94 @@ public class ServerInfo {
         this.restartAttempts = restartAttempts;
     }
 
-    public void validate() {
+    public String getStopCommand() {
+        return stopCommand;
+    }
+
+    public void setStopCommand(String stopCommand) {
+        this.stopCommand = stopCommand;
+    }
+
+    public ReadinessProbe getReadinessProbe() {
+        return readinessProbe;
+    }
+
+    public void setReadinessProbe(ReadinessProbe readinessProbe) {
+        this.readinessProbe = readinessProbe;
+    }
+
+    public ProcessPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(ProcessPriority priority) {
+        this.priority = priority;
+    }
+
+    public List<ConsoleTrigger> getTriggers() {
+        return triggers;
+    }
+
+    public void setTriggers(List<ConsoleTrigger> triggers) {
+        this.triggers = triggers;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<String> groups) {
+        this.groups = groups;
+    }
+
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(List<String> dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    public void validate(String name) {
         if (command == null || command.isEmpty() || command.isBlank())
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         if (workingDirectory == null || workingDirectory.isEmpty() || workingDirectory.isBlank())
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        if (triggers != null) {
+            for (ConsoleTrigger trigger: triggers)
+                validateTrigger(trigger);
+        }
+        if (readinessProbe != null)
+            readinessProbe.validate();
+        if (priority != null)
+            priority.validate();
+        if (groups != null && groups.stream().anyMatch(group -> group == null || group.isBlank()))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Group names cannot be empty.");
+        if (dependencies != null) {
+            for (String dependency: dependencies) {
+                if (dependency == null || dependency.isBlank())
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Dependency names cannot be empty.");
+                if (dependency.equals(name))
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A server cannot depend on itself.");
+            }
+        }
+    }
+
+    private void validateTrigger(ConsoleTrigger trigger) {
+        if (trigger == null || trigger.getPattern() == null || trigger.getPattern().isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Triggers need a pattern.");
+        if (trigger.getAction() == null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Triggers need an action.");
+        if (trigger.getAction() == ConsoleTrigger.Action.COMMAND && (trigger.getArgument() == null ||
+                trigger.getArgument().isBlank()))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Command triggers need a command.");
+        if (trigger.isRegex()) {
+            try {
+                Pattern.compile(trigger.getPattern());
+            } catch (PatternSyntaxException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid trigger pattern " +
+                        trigger.getPattern() + ".", e);
+            }
+        }
     }
 }
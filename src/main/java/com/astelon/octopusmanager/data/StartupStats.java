@@ -0,0 +1,47 @@
+package com.astelon.octopusmanager.data;
+
+// Startup latencies in milliseconds, from launching the process to passing the readiness probe. The counts have one
+// more entry than the bounds, for the startups slower than the highest bound.
+public class StartupStats {
+
+    private final long[] bounds;
+    private final long[] counts;
+    private final long startups;
+    private final long averageLatency;
+    private final long lastLatency;
+    private final long timeouts;
+
+    public StartupStats(long[] bounds, long[] counts, long startups, long averageLatency, long lastLatency,
+                        long timeouts) {
+        this.bounds = bounds;
+        this.counts = counts;
+        this.startups = startups;
+        this.averageLatency = averageLatency;
+        this.lastLatency = lastLatency;
+        this.timeouts = timeouts;
+    }
+
+    public long[] getBounds() {
+        return bounds;
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+
+    public long getStartups() {
+        return startups;
+    }
+
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+}
@@ -0,0 +1,26 @@
+package com.astelon.octopusmanager.data;
+
+public class TaggedLine {
+
+    private final String server;
+    private final long sequence;
+    private final String line;
+
+    public TaggedLine(String server, long sequence, String line) {
+        this.server = server;
+        this.sequence = sequence;
+        this.line = line;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getLine() {
+        return line;
+    }
+}
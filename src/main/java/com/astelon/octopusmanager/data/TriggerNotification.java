@@ -0,0 +1,26 @@
+package com.astelon.octopusmanager.data;
+
+public class TriggerNotification {
+
+    private final String pattern;
+    private final String argument;
+    private final String line;
+
+    public TriggerNotification(String pattern, String argument, String line) {
+        this.pattern = pattern;
+        this.argument = argument;
+        this.line = line;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    public String getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,288 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.BulkOperation;
+import com.astelon.octopusmanager.data.BulkProgress;
+import com.astelon.octopusmanager.data.BulkRequest;
+import com.astelon.octopusmanager.data.Server;
+import com.astelon.octopusmanager.data.ServerInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Starts, stops or restarts many servers at once. At most `concurrency` servers of an operation are handled at the
+// same time and two of them never begin closer than the stagger delay, so a whole fleet doesn't hit the disk at once.
+// Servers are started after the servers they depend on and stopped before them. Progress goes to /topic/bulk/{id}.
+@Service
+public class BulkOperationManager {
+
+    public static final String BULK_DESTINATION = "/topic/bulk/";
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkOperationManager.class);
+    private static final long FINISHED_OPERATION_MILLIS = 600000;
+
+    private final ServerManager serverManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int defaultConcurrency;
+    private final long defaultStaggerDelay;
+    private final long serverTimeout;
+    private final ConcurrentHashMap<String, BulkOperation> operations;
+    private final ExecutorService executor;
+
+    public BulkOperationManager(AppConfig appConfig, ServerManager serverManager,
+                                SimpMessagingTemplate messagingTemplate) {
+        this.serverManager = serverManager;
+        this.messagingTemplate = messagingTemplate;
+        defaultConcurrency = Math.max(1, appConfig.getBulkConcurrency());
+        defaultStaggerDelay = appConfig.getBulkStaggerDelayMillis();
+        serverTimeout = appConfig.getBulkServerTimeoutMillis();
+        operations = new ConcurrentHashMap<>();
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "Bulk Operation Thread " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public BulkOperation submit(BulkOperation.Action action, BulkRequest request) {
+        Set<String> names = new LinkedHashSet<>();
+        if (request.getServers() != null)
+            names.addAll(request.getServers());
+        if (request.getGroup() != null)
+            names.addAll(serverManager.getServersInGroup(request.getGroup()));
+        if (names.isEmpty())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No servers were selected.");
+        int concurrency = request.getConcurrency() == null ? defaultConcurrency : request.getConcurrency();
+        long staggerDelay = request.getStaggerDelay() == null ? defaultStaggerDelay : request.getStaggerDelay();
+        if (concurrency < 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The concurrency must be at least 1.");
+        if (staggerDelay < 0)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The stagger delay cannot be negative.");
+        Map<String, Server> servers = new HashMap<>();
+        Map<String, Set<String>> prerequisites = new HashMap<>();
+        for (String name: names)
+            servers.put(name, serverManager.getServer(name));
+        for (String name: names)
+            prerequisites.put(name, new LinkedHashSet<>());
+        // Dependencies outside of the selection are not waited for.
+        for (String name: names) {
+            ServerInfo info = serverManager.getServerInfo(name);
+            if (info.getDependencies() == null)
+                continue;
+            for (String dependency: info.getDependencies()) {
+                if (!servers.containsKey(dependency))
+                    continue;
+                if (action == BulkOperation.Action.STOP)
+                    prerequisites.get(dependency).add(name);
+                else
+                    prerequisites.get(name).add(dependency);
+            }
+        }
+        List<String> order = sort(names, prerequisites);
+        removeFinishedOperations();
+        BulkOperation operation = new BulkOperation(UUID.randomUUID().toString(), action, order, concurrency,
+                staggerDelay);
+        for (String name: order)
+            operation.setProgress(new BulkProgress(operation.getId(), name, BulkProgress.State.PENDING, null, 0,
+                    order.size()));
+        operations.put(operation.getId(), operation);
+        executor.execute(() -> run(operation, servers, prerequisites));
+        return operation;
+    }
+
+    public BulkOperation getOperation(String id) {
+        BulkOperation operation = operations.get(id);
+        if (operation == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return operation;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Orders the servers so each one comes after its prerequisites, keeping the selection order otherwise.
+    static List<String> sort(Set<String> names, Map<String, Set<String>> prerequisites) {
+        Map<String, Integer> remaining = new HashMap<>();
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String name: names) {
+            remaining.put(name, prerequisites.get(name).size());
+            if (prerequisites.get(name).isEmpty())
+                ready.add(name);
+        }
+        List<String> order = new ArrayList<>(names.size());
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String dependent: getDependents(name, prerequisites)) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0)
+                    ready.add(dependent);
+            }
+        }
+        if (order.size() != names.size())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The dependencies of the servers form a cycle.");
+        return order;
+    }
+
+    private static List<String> getDependents(String name, Map<String, Set<String>> prerequisites) {
+        List<String> dependents = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry: prerequisites.entrySet()) {
+            if (entry.getValue().contains(name))
+                dependents.add(entry.getKey());
+        }
+        return dependents;
+    }
+
+    private void run(BulkOperation operation, Map<String, Server> servers, Map<String, Set<String>> prerequisites) {
+        int total = operation.getServers().size();
+        int completed = 0;
+        int running = 0;
+        long lastLaunch = 0;
+        Set<String> settled = new HashSet<>();
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String name: operation.getServers()) {
+            if (prerequisites.get(name).isEmpty())
+                ready.add(name);
+        }
+        BlockingQueue<BulkProgress> results = new LinkedBlockingQueue<>();
+        try {
+            while (completed < total) {
+                while (!ready.isEmpty() && running < operation.getConcurrency()) {
+                    long wait = lastLaunch + operation.getStaggerDelay() - System.currentTimeMillis();
+                    if (lastLaunch != 0 && wait > 0)
+                        Thread.sleep(wait);
+                    String name = ready.poll();
+                    Server server = servers.get(name);
+                    publish(operation, new BulkProgress(operation.getId(), name, BulkProgress.State.RUNNING, null,
+                            completed, total));
+                    executor.execute(() -> results.add(perform(operation.getAction(), server)));
+                    lastLaunch = System.currentTimeMillis();
+                    running++;
+                }
+                BulkProgress result = results.take();
+                running--;
+                completed++;
+                settled.add(result.getServer());
+                publish(operation, new BulkProgress(operation.getId(), result.getServer(), result.getState(),
+                        result.getMessage(), completed, total));
+                ArrayDeque<String> skipped = new ArrayDeque<>();
+                for (String dependent: getDependents(result.getServer(), prerequisites)) {
+                    if (result.getState() == BulkProgress.State.FAILED)
+                        skipped.add(dependent);
+                    else if (prerequisites.get(dependent).remove(result.getServer()) &&
+                            prerequisites.get(dependent).isEmpty() && !settled.contains(dependent))
+                        ready.add(dependent);
+                }
+                while (!skipped.isEmpty()) {
+                    String name = skipped.poll();
+                    if (!settled.add(name))
+                        continue;
+                    completed++;
+                    publish(operation, new BulkProgress(operation.getId(), name, BulkProgress.State.SKIPPED,
+                            "A server it depends on failed.", completed, total));
+                    skipped.addAll(getDependents(name, prerequisites));
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info("Bulk operation " + operation.getId() + " was interrupted.");
+            Thread.currentThread().interrupt();
+        } finally {
+            operation.finish();
+            publish(operation, new BulkProgress(operation.getId(), null, BulkProgress.State.FINISHED, null,
+                    completed, total));
+        }
+    }
+
+    private BulkProgress perform(BulkOperation.Action action, Server server) {
+        String name = server.getName();
+        try {
+            CompletableFuture<Void> exit = server.getExitFuture();
+            switch (action) {
+                case START:
+                    if (!server.start())
+                        return result(name, BulkProgress.State.SKIPPED, "The server is already running.");
+                    return awaitReady(server);
+                case STOP:
+                    if (!server.stop())
+                        return result(name, BulkProgress.State.SKIPPED, "The server is not running.");
+                    exit.get(serverTimeout, TimeUnit.MILLISECONDS);
+                    return result(name, BulkProgress.State.DONE, null);
+                case RESTART:
+                    // Servers that are down are simply started.
+                    if (!server.restart()) {
+                        if (server.start())
+                            return awaitReady(server);
+                        return result(name, BulkProgress.State.SKIPPED, "The server is busy.");
+                    }
+                    exit.get(serverTimeout, TimeUnit.MILLISECONDS);
+                    return awaitReady(server);
+                default:
+                    return result(name, BulkProgress.State.FAILED, "Unknown action.");
+            }
+        } catch (TimeoutException e) {
+            return result(name, BulkProgress.State.FAILED, "The server did not stop in time.");
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            logger.error("Bulk " + action + " of server " + name + " failed.", e);
+            return result(name, BulkProgress.State.FAILED, "The server could not be handled.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result(name, BulkProgress.State.FAILED, "The operation was interrupted.");
+        }
+    }
+
+    // Dependents only go ahead once the server passed its readiness probe.
+    private BulkProgress awaitReady(Server server) throws InterruptedException, ExecutionException {
+        try {
+            if (!server.getReadyFuture().get(serverTimeout, TimeUnit.MILLISECONDS))
+                return result(server.getName(), BulkProgress.State.FAILED, "The server did not become ready.");
+        } catch (TimeoutException e) {
+            return result(server.getName(), BulkProgress.State.FAILED, "The server did not become ready in time.");
+        }
+        return result(server.getName(), BulkProgress.State.DONE, null);
+    }
+
+    private BulkProgress result(String server, BulkProgress.State state, String message) {
+        return new BulkProgress(null, server, state, message, 0, 0);
+    }
+
+    private void publish(BulkOperation operation, BulkProgress progress) {
+        if (progress.getServer() != null)
+            operation.setProgress(progress);
+        try {
+            messagingTemplate.convertAndSend(BULK_DESTINATION + operation.getId(), progress);
+        } catch (RuntimeException e) {
+            logger.error("Could not send the progress of bulk operation " + operation.getId() + ".", e);
+        }
+    }
+
+    private void removeFinishedOperations() {
+        long now = System.currentTimeMillis();
+        operations.values().removeIf(operation -> operation.isFinished() &&
+                now - operation.getFinishTime() >= FINISHED_OPERATION_MILLIS);
+    }
+}
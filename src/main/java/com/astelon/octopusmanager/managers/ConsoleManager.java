@@ -2,40 +2,91 @@ package com.astelon.octopusmanager.managers;
 
 import com.astelon.octopusmanager.configs.AppConfig;
 import com.astelon.octopusmanager.configs.ServerConfig;
+import com.astelon.octopusmanager.data.CommandOutput;
+import com.astelon.octopusmanager.data.ConsoleCommand;
+import com.astelon.octopusmanager.data.ConsoleLines;
+import com.astelon.octopusmanager.data.ConsoleMetrics;
+import com.astelon.octopusmanager.data.ConsoleTrigger;
+import com.astelon.octopusmanager.data.MultiplexedLines;
 import com.astelon.octopusmanager.data.ServerInfo;
 import com.astelon.octopusmanager.data.Server;
 import com.astelon.octopusmanager.data.ServerConsole;
+import com.astelon.octopusmanager.data.TaggedLine;
 import com.astelon.octopusmanager.exceptions.ServerNotFoundException;
+import com.astelon.octopusmanager.utils.ConsoleExecutors;
+import com.astelon.octopusmanager.utils.ConsoleMemoryGovernor;
+import com.astelon.octopusmanager.utils.ConsoleSinkFactory;
+import com.astelon.octopusmanager.utils.LineFilter;
+import com.astelon.octopusmanager.utils.TriggerListener;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Service
 public class ConsoleManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleManager.class);
+
     private final AppConfig appConfig;
     private final SimpMessagingTemplate messagingTemplate;
-    private final HashMap<String, ServerConsole> consoles;
+    private final SimpUserRegistry userRegistry;
+    private final ConcurrentHashMap<String, ServerConsole> consoles;
+    private final ScheduledExecutorService flushScheduler;
+    private final ScheduledExecutorService historyExecutor;
+    private final ExecutorService readExecutor;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService sinkExecutor;
+    private final ConsoleMemoryGovernor memoryGovernor;
+    private final List<ConsoleSinkFactory> sinkFactories;
 
-    public ConsoleManager(ServerConfig serverConfig, AppConfig appConfig, SimpMessagingTemplate messagingTemplate) {
+    public ConsoleManager(ServerConfig serverConfig, AppConfig appConfig, SimpMessagingTemplate messagingTemplate,
+                          SimpUserRegistry userRegistry, ObjectProvider<ConsoleSinkFactory> sinkFactories) {
         this.appConfig = appConfig;
         this.messagingTemplate = messagingTemplate;
-        consoles = new HashMap<>();
+        this.userRegistry = userRegistry;
+        consoles = new ConcurrentHashMap<>();
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Console Flush Thread"));
+        historyExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Console History Thread"));
+        readExecutor = ConsoleExecutors.createUnbounded(appConfig.getConsoleThreadMode(), "Console Read Thread");
+        writeExecutor = ConsoleExecutors.createUnbounded(appConfig.getConsoleThreadMode(), "Console Write Thread");
+        sinkExecutor = ConsoleExecutors.create(appConfig.getConsoleThreadMode(), "Console Sink Thread",
+                appConfig.getConsoleSinkThreads());
+        this.sinkFactories = sinkFactories.orderedStream().collect(Collectors.toList());
+        memoryGovernor = new ConsoleMemoryGovernor(appConfig.getConsoleMemoryLimitBytes());
         for (Map.Entry<String, ServerInfo> entry: serverConfig.getServers().entrySet()) {
-            consoles.put(entry.getKey(), new ServerConsole(entry.getKey(), appConfig.getConsoleCacheSize(), messagingTemplate));
+            consoles.put(entry.getKey(), createServerConsole(entry.getKey()));
         }
+        historyExecutor.scheduleWithFixedDelay(this::flushHistories, 1, 1, TimeUnit.SECONDS);
     }
 
     public void addServerConsole(Server server) {
-        consoles.put(server.getName(), new ServerConsole(server.getName(), appConfig.getConsoleCacheSize(), messagingTemplate));
+        consoles.put(server.getName(), createServerConsole(server.getName()));
     }
 
     public void removeServerConsole(String serverName) {
-        consoles.remove(serverName);
+        ServerConsole console = consoles.remove(serverName);
+        if (console != null)
+            console.shutdown();
     }
 
     public void startConsole(String serverName, Process process) {
@@ -46,10 +97,70 @@ public class ConsoleManager {
         return getServerConsole(serverName).getConsoleText();
     }
 
+    public ConsoleLines getConsoleTextAfter(String serverName, String epoch, long sequence) {
+        return getServerConsole(serverName).getConsoleTextAfter(epoch, sequence);
+    }
+
+    public MultiplexedLines getConsoleSnapshot(List<String> serverNames, LineFilter filter) {
+        List<TaggedLine> lines = new ArrayList<>();
+        Map<String, Long> lastSequences = new LinkedHashMap<>();
+        for (String serverName: serverNames) {
+            ConsoleLines consoleLines = getServerConsole(serverName).getSnapshot();
+            long sequence = consoleLines.getFirstSequence();
+            for (String line: consoleLines.getLines()) {
+                if (line != null && filter.matches(line))
+                    lines.add(new TaggedLine(serverName, sequence, line));
+                sequence++;
+            }
+            lastSequences.put(serverName, consoleLines.getLastSequence());
+        }
+        return new MultiplexedLines(lines, lastSequences);
+    }
+
+    public ConsoleLines getConsoleHistory(String serverName, long before, int limit) {
+        try {
+            return getServerConsole(serverName).getHistory(before, limit);
+        } catch (IOException e) {
+            logger.error("Could not read the console history of server " + serverName + ".", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read the console history.", e);
+        }
+    }
+
+    public void setTriggers(String serverName, List<ConsoleTrigger> triggers, TriggerListener listener) {
+        getServerConsole(serverName).setTriggers(triggers, listener);
+    }
+
+    public ConsoleMetrics getMetrics(String serverName, Map<String, Integer> subscribers) {
+        return getServerConsole(serverName).getMetrics(subscribers.getOrDefault(serverName, 0));
+    }
+
+    public List<ConsoleMetrics> getMetrics(Map<String, Integer> subscribers) {
+        List<ConsoleMetrics> result = new ArrayList<>(consoles.size());
+        for (Map.Entry<String, ServerConsole> entry: consoles.entrySet())
+            result.add(entry.getValue().getMetrics(subscribers.getOrDefault(entry.getKey(), 0)));
+        return result;
+    }
+
+    public ConsoleMemoryGovernor getMemoryGovernor() {
+        return memoryGovernor;
+    }
+
     public void writeToConsole(String serverName, String message) {
         getServerConsole(serverName).writeMessage(message);
     }
 
+    public void writeToConsole(String serverName, List<ConsoleCommand> commands) {
+        getServerConsole(serverName).writeMessages(commands);
+    }
+
+    public CompletableFuture<CommandOutput> executeCommand(String serverName, String command, Pattern terminator,
+                                                           long quietPeriod, long timeout) {
+        ServerConsole console = getServerConsole(serverName);
+        if (!console.isRunning())
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The server is offline.");
+        return console.executeCommand(command, terminator, quietPeriod, timeout);
+    }
+
     public void stopConsole(String serverName) {
         getServerConsole(serverName).processStop();
     }
@@ -61,6 +172,21 @@ public class ConsoleManager {
     public void shutdown() {
         for (ServerConsole console: consoles.values())
             console.shutdown();
+        flushScheduler.shutdownNow();
+        historyExecutor.shutdownNow();
+        readExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
+        sinkExecutor.shutdownNow();
+    }
+
+    private void flushHistories() {
+        for (ServerConsole console: consoles.values())
+            console.flushHistory();
+    }
+
+    private ServerConsole createServerConsole(String serverName) {
+        return new ServerConsole(serverName, appConfig, messagingTemplate, userRegistry, flushScheduler,
+                historyExecutor, readExecutor, writeExecutor, sinkExecutor, memoryGovernor, sinkFactories);
     }
 
     @NotNull
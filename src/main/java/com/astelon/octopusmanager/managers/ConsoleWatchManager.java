@@ -0,0 +1,208 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.MultiplexedLines;
+import com.astelon.octopusmanager.data.TaggedLine;
+import com.astelon.octopusmanager.utils.ConsoleSink;
+import com.astelon.octopusmanager.utils.ConsoleSinkFactory;
+import com.astelon.octopusmanager.utils.ConsoleSubscriberGuard;
+import com.astelon.octopusmanager.utils.LineFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Streams the lines of several consoles to /topic/consoles/{watchId}. A watch is fed by a sink on the console of every
+// server it covers, batches the lines that pass its filter and is removed once nobody has been subscribed to it for a
+// while.
+@Service
+public class ConsoleWatchManager implements ConsoleSinkFactory {
+
+    public static final String WATCH_DESTINATION = "/topic/consoles/";
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleWatchManager.class);
+    private static final long UNUSED_WATCH_MILLIS = 30000;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final int batchSize;
+    private final long flushInterval;
+    private final ConcurrentHashMap<String, Watch> watches;
+    private final ConcurrentHashMap<String, Set<Watch>> watchesByServer;
+    private final ScheduledExecutorService watchScheduler;
+
+    public ConsoleWatchManager(AppConfig appConfig, SimpMessagingTemplate messagingTemplate,
+                               SimpUserRegistry userRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        batchSize = Math.max(1, appConfig.getConsoleBatchSize());
+        flushInterval = appConfig.getConsoleFlushIntervalMillis();
+        watches = new ConcurrentHashMap<>();
+        watchesByServer = new ConcurrentHashMap<>();
+        watchScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Console Watch Thread"));
+        watchScheduler.scheduleWithFixedDelay(this::removeUnusedWatches, UNUSED_WATCH_MILLIS, UNUSED_WATCH_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getName() {
+        return "watch";
+    }
+
+    @Override
+    public ConsoleSink createSink(String serverName) {
+        return (sequence, line) -> dispatch(serverName, sequence, line);
+    }
+
+    // Registering a watch with an existing id replaces it. The watch holds its lines until it is started.
+    public void watch(String watchId, List<String> servers, LineFilter filter) {
+        Watch watch = new Watch(watchId, Set.copyOf(servers), filter);
+        unwatch(watchId);
+        watches.put(watchId, watch);
+        for (String server: watch.servers)
+            watchesByServer.computeIfAbsent(server, key -> new CopyOnWriteArraySet<>()).add(watch);
+    }
+
+    // Streams the lines after the given sequence of every server, the ones before it are in the snapshot the client
+    // got. Lines the watch already holds go out now.
+    public void start(String watchId, Map<String, Long> lastSequences) {
+        Watch watch = watches.get(watchId);
+        if (watch != null && watch.start(lastSequences))
+            watch.flush();
+    }
+
+    public void unwatch(String watchId) {
+        Watch watch = watches.remove(watchId);
+        if (watch == null)
+            return;
+        for (String server: watch.servers) {
+            Set<Watch> serverWatches = watchesByServer.get(server);
+            if (serverWatches != null)
+                serverWatches.remove(watch);
+        }
+    }
+
+    public void shutdown() {
+        watchScheduler.shutdownNow();
+    }
+
+    private void dispatch(String serverName, long sequence, String line) {
+        Set<Watch> serverWatches = watchesByServer.get(serverName);
+        if (serverWatches == null || serverWatches.isEmpty())
+            return;
+        TaggedLine taggedLine = null;
+        for (Watch watch: serverWatches) {
+            if (!watch.filter.matches(line))
+                continue;
+            if (taggedLine == null)
+                taggedLine = new TaggedLine(serverName, sequence, line);
+            if (watch.add(taggedLine))
+                watch.flush();
+        }
+    }
+
+    private void removeUnusedWatches() {
+        Set<String> subscribed = new HashSet<>();
+        for (SimpSubscription subscription: userRegistry.findSubscriptions(subscription ->
+                subscription.getDestination().startsWith(WATCH_DESTINATION)))
+            subscribed.add(subscription.getDestination().substring(WATCH_DESTINATION.length()));
+        long now = System.currentTimeMillis();
+        for (Watch watch: watches.values()) {
+            if (subscribed.contains(watch.id))
+                watch.lastSubscribed = now;
+            else if (now - watch.lastSubscribed >= UNUSED_WATCH_MILLIS)
+                unwatch(watch.id);
+        }
+    }
+
+    private class Watch {
+
+        private final String id;
+        private final String destination;
+        private final Set<String> servers;
+        private final LineFilter filter;
+        private final Object sendLock;
+
+        private List<TaggedLine> pending;
+        private Map<String, Long> startSequences;
+        private boolean flushScheduled;
+        private volatile long lastSubscribed;
+
+        private Watch(String id, Set<String> servers, LineFilter filter) {
+            this.id = id;
+            destination = WATCH_DESTINATION + id;
+            this.servers = servers;
+            this.filter = filter;
+            sendLock = new Object();
+            pending = new ArrayList<>();
+            lastSubscribed = System.currentTimeMillis();
+        }
+
+        // Returns true when the batch is full and should be flushed.
+        private synchronized boolean add(TaggedLine line) {
+            if (startSequences != null && line.getSequence() <= startSequences.getOrDefault(line.getServer(), 0L))
+                return false;
+            pending.add(line);
+            if (startSequences == null)
+                return false;
+            if (pending.size() >= batchSize || flushInterval <= 0)
+                return true;
+            if (!flushScheduled) {
+                try {
+                    watchScheduler.schedule(this::scheduledFlush, flushInterval, TimeUnit.MILLISECONDS);
+                    flushScheduled = true;
+                } catch (RejectedExecutionException e) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Returns true when lines are waiting.
+        private synchronized boolean start(Map<String, Long> lastSequences) {
+            startSequences = Map.copyOf(lastSequences);
+            pending.removeIf(line -> line.getSequence() <= startSequences.getOrDefault(line.getServer(), 0L));
+            return !pending.isEmpty();
+        }
+
+        private void flush() {
+            synchronized (sendLock) {
+                List<TaggedLine> lines;
+                synchronized (this) {
+                    if (pending.isEmpty() || startSequences == null)
+                        return;
+                    lines = Collections.unmodifiableList(pending);
+                    pending = new ArrayList<>();
+                }
+                try {
+                    messagingTemplate.convertAndSend(destination, new MultiplexedLines(lines, null),
+                            Map.of(ConsoleSubscriberGuard.LINE_COUNT_HEADER, Integer.toString(lines.size())));
+                } catch (RuntimeException e) {
+                    logger.error("Could not send the lines of console watch " + id + ".", e);
+                }
+            }
+        }
+
+        private void scheduledFlush() {
+            synchronized (this) {
+                flushScheduled = false;
+            }
+            flush();
+        }
+    }
+}
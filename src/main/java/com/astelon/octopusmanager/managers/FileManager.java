@@ -23,6 +23,7 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -33,10 +34,10 @@ public class FileManager {
 
     private static final Logger logger = LoggerFactory.getLogger(FileManager.class);
 
-    private final HashMap<String, List<Path>> directoryMap;
+    private final ConcurrentHashMap<String, List<Path>> directoryMap;
 
     public FileManager(ServerConfig serverConfig) {
-        directoryMap = new HashMap<>();
+        directoryMap = new ConcurrentHashMap<>();
         for (Map.Entry<String, ServerInfo> entry: serverConfig.getServers().entrySet()) {
             addServerDirectories(entry.getKey(), entry.getValue());
         }
@@ -0,0 +1,77 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.ConsoleMetrics;
+import com.astelon.octopusmanager.data.MetricsReport;
+import com.astelon.octopusmanager.utils.ConsoleSubscriberGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class MetricsManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsManager.class);
+
+    private static final String CONSOLE_DESTINATION = "/topic/console/";
+
+    private final ConsoleManager consoleManager;
+    private final SimpUserRegistry userRegistry;
+    private final ConsoleSubscriberGuard subscriberGuard;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ScheduledExecutorService metricsScheduler;
+
+    public MetricsManager(AppConfig appConfig, ConsoleManager consoleManager, SimpUserRegistry userRegistry,
+                          ConsoleSubscriberGuard subscriberGuard, SimpMessagingTemplate messagingTemplate) {
+        this.consoleManager = consoleManager;
+        this.userRegistry = userRegistry;
+        this.subscriberGuard = subscriberGuard;
+        this.messagingTemplate = messagingTemplate;
+        metricsScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Metrics Thread"));
+        long interval = appConfig.getMetricsIntervalMillis();
+        if (interval > 0)
+            metricsScheduler.scheduleAtFixedRate(this::publishMetrics, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public MetricsReport getMetrics() {
+        return new MetricsReport(consoleManager.getMetrics(countSubscribers()), subscriberGuard.getSessionCount(),
+                subscriberGuard.getDroppedFrames(), subscriberGuard.getDroppedLines(),
+                subscriberGuard.getDisconnectedSessions(), consoleManager.getMemoryGovernor().getUsed(),
+                consoleManager.getMemoryGovernor().getLimit(), consoleManager.getMemoryGovernor().getEvicted());
+    }
+
+    public ConsoleMetrics getMetrics(String serverName) {
+        return consoleManager.getMetrics(serverName, countSubscribers());
+    }
+
+    public void shutdown() {
+        metricsScheduler.shutdownNow();
+    }
+
+    private void publishMetrics() {
+        try {
+            messagingTemplate.convertAndSend("/topic/metrics", getMetrics());
+        } catch (RuntimeException e) {
+            logger.error("Could not publish the metrics.", e);
+        }
+    }
+
+    private Map<String, Integer> countSubscribers() {
+        Map<String, Integer> result = new HashMap<>();
+        for (SimpSubscription subscription: userRegistry.findSubscriptions(subscription ->
+                subscription.getDestination().startsWith(CONSOLE_DESTINATION))) {
+            String serverName = subscription.getDestination().substring(CONSOLE_DESTINATION.length());
+            result.merge(serverName, 1, Integer::sum);
+        }
+        return result;
+    }
+}
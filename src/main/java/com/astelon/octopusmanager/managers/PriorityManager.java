@@ -0,0 +1,285 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.ProcessPriority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Applies the CPU affinity, niceness and I/O priority of the servers by launching them through taskset, nice and
+// ionice, and checks through /proc that they took effect. The threads of the manager itself get settings of their
+// own, so the control plane stays responsive while the servers are busy. Servers inherit those settings, so the ones
+// that don't set a value the manager changed are reset to the system default. Linux only, ignored elsewhere.
+@Service
+public class PriorityManager {
+
+    // How long after the launch the settings of a server are checked, to let the wrappers run.
+    public static final long CHECK_DELAY_MILLIS = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(PriorityManager.class);
+    private static final long COMMAND_TIMEOUT_SECONDS = 10;
+
+    private final boolean supported;
+    private final String taskset;
+    private final String nice;
+    private final String ionice;
+    private final String renice;
+    private final String onlineCpus;
+    private final ProcessPriority managerPriority;
+
+    public PriorityManager(AppConfig appConfig) {
+        supported = System.getProperty("os.name", "").startsWith("Linux") && Files.isDirectory(Path.of("/proc/self"));
+        taskset = findExecutable("taskset");
+        nice = findExecutable("nice");
+        ionice = findExecutable("ionice");
+        renice = findExecutable("renice");
+        onlineCpus = readOnlineCpus();
+        ProcessPriority priority = appConfig.getManagerPriority() == null ? new ProcessPriority() :
+                appConfig.getManagerPriority();
+        try {
+            priority.validate();
+        } catch (ResponseStatusException e) {
+            logger.error("Invalid manager priority, leaving the manager as it is: " + e.getReason());
+            priority = new ProcessPriority();
+        }
+        managerPriority = priority;
+    }
+
+    // Pins and reprioritizes every thread of the manager. Threads started later inherit the settings of the thread
+    // that starts them.
+    public void applyToManager() {
+        if (!supported || !isSet(managerPriority))
+            return;
+        String pid = Long.toString(ProcessHandle.current().pid());
+        List<String> threads = getThreads();
+        if (managerPriority.hasCpuAffinity())
+            apply("CPU affinity", taskset, List.of("-a", "-p", "-c", managerPriority.getCpuAffinity(), pid));
+        if (managerPriority.getNiceness() != null) {
+            List<String> arguments = new ArrayList<>(List.of("-n", managerPriority.getNiceness().toString(), "-p"));
+            arguments.addAll(threads);
+            apply("niceness", renice, arguments);
+        }
+        if (managerPriority.getIoClass() != null) {
+            List<String> arguments = getIoArguments(managerPriority);
+            arguments.add("-p");
+            arguments.addAll(threads);
+            apply("I/O priority", ionice, arguments);
+        }
+    }
+
+    // The commands to run the server command through. Empty when there is nothing to apply.
+    public List<String> getWrapper(ProcessPriority priority) {
+        List<String> wrapper = new ArrayList<>();
+        if (!supported)
+            return wrapper;
+        ProcessPriority effective = getEffective(priority);
+        if (effective.hasCpuAffinity()) {
+            if (taskset == null)
+                logger.warn("taskset is not installed, the CPU affinity is not applied.");
+            else
+                wrapper.addAll(List.of(taskset, "-c", effective.getCpuAffinity()));
+        }
+        if (effective.getNiceness() != null) {
+            // nice adds to the niceness of the launching thread, which may have that of the manager.
+            Integer current = readNiceness("thread-self");
+            int adjustment = effective.getNiceness() - (current == null ? 0 : current);
+            if (nice == null)
+                logger.warn("nice is not installed, the niceness is not applied.");
+            else if (adjustment != 0)
+                wrapper.addAll(List.of(nice, "-n", Integer.toString(adjustment)));
+        }
+        if (effective.getIoClass() != null) {
+            if (ionice == null) {
+                logger.warn("ionice is not installed, the I/O priority is not applied.");
+            } else {
+                wrapper.addAll(List.of(ionice, "-t"));
+                wrapper.addAll(getIoArguments(effective));
+            }
+        }
+        return wrapper;
+    }
+
+    // Returns a description of every setting the process doesn't have.
+    public List<String> verify(ProcessPriority priority, ProcessHandle handle) {
+        List<String> problems = new ArrayList<>();
+        if (!supported || !handle.isAlive())
+            return problems;
+        ProcessPriority effective = getEffective(priority);
+        String pid = Long.toString(handle.pid());
+        if (effective.hasCpuAffinity()) {
+            String actual = readStatusField(pid, "Cpus_allowed_list");
+            BitSet expected = parseCpuList(effective.getCpuAffinity());
+            // The kernel leaves out the CPUs that aren't online.
+            if (onlineCpus != null)
+                expected.and(parseCpuList(onlineCpus));
+            if (actual != null && !parseCpuList(actual).equals(expected))
+                problems.add("The CPU affinity is " + actual + " instead of " + effective.getCpuAffinity() + ".");
+        }
+        if (effective.getNiceness() != null) {
+            Integer actual = readNiceness(pid);
+            if (actual != null && !actual.equals(effective.getNiceness()))
+                problems.add("The niceness is " + actual + " instead of " + effective.getNiceness() + ".");
+        }
+        if (effective.getIoClass() != null && ionice != null) {
+            // /proc doesn't show the I/O priority, ionice reads it with ioprio_get.
+            String actual = runCommand(List.of(ionice, "-p", pid));
+            String expected = getIoDescription(effective);
+            if (actual != null && !actual.trim().startsWith(expected))
+                problems.add("The I/O priority is " + actual.trim() + " instead of " + expected + ".");
+        }
+        return problems;
+    }
+
+    private ProcessPriority getEffective(ProcessPriority priority) {
+        ProcessPriority effective = new ProcessPriority();
+        if (priority != null && priority.hasCpuAffinity())
+            effective.setCpuAffinity(priority.getCpuAffinity());
+        else if (managerPriority.hasCpuAffinity() && onlineCpus != null)
+            effective.setCpuAffinity(onlineCpus);
+        if (priority != null && priority.getNiceness() != null)
+            effective.setNiceness(priority.getNiceness());
+        else if (managerPriority.getNiceness() != null)
+            effective.setNiceness(0);
+        if (priority != null && priority.getIoClass() != null) {
+            effective.setIoClass(priority.getIoClass());
+            effective.setIoPriority(priority.getIoPriority());
+        } else if (managerPriority.getIoClass() != null) {
+            effective.setIoClass(ProcessPriority.IoClass.NONE);
+        }
+        return effective;
+    }
+
+    private static boolean isSet(ProcessPriority priority) {
+        return priority.hasCpuAffinity() || priority.getNiceness() != null || priority.getIoClass() != null;
+    }
+
+    // The ionice classes are numbered in the order of the enum.
+    private static List<String> getIoArguments(ProcessPriority priority) {
+        List<String> arguments = new ArrayList<>(List.of("-c", Integer.toString(priority.getIoClass().ordinal())));
+        if (priority.getIoPriority() != null)
+            arguments.addAll(List.of("-n", priority.getIoPriority().toString()));
+        return arguments;
+    }
+
+    // The start of what `ionice -p` prints for these settings, such as "best-effort: prio 4".
+    private static String getIoDescription(ProcessPriority priority) {
+        String name = priority.getIoClass() == ProcessPriority.IoClass.BEST_EFFORT ? "best-effort" :
+                priority.getIoClass().name().toLowerCase(Locale.ROOT);
+        return priority.getIoPriority() == null ? name : name + ": prio " + priority.getIoPriority();
+    }
+
+    private void apply(String setting, String executable, List<String> arguments) {
+        if (executable == null) {
+            logger.warn("The " + setting + " of the manager cannot be set, the command for it is not installed.");
+            return;
+        }
+        List<String> command = new ArrayList<>();
+        command.add(executable);
+        command.addAll(arguments);
+        if (runCommand(command) == null)
+            logger.warn("Could not set the " + setting + " of the manager.");
+        else
+            logger.info("Set the " + setting + " of the manager.");
+    }
+
+    // Returns the output of the command, or null when it fails.
+    private static String runCommand(List<String> command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return null;
+            }
+            if (process.exitValue() != 0) {
+                logger.debug("Command " + command + " failed: " + output.trim());
+                return null;
+            }
+            return output;
+        } catch (IOException e) {
+            logger.debug("Could not run command " + command + ".", e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static List<String> getThreads() {
+        try (Stream<Path> tasks = Files.list(Path.of("/proc/self/task"))) {
+            return tasks.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        } catch (IOException e) {
+            return List.of(Long.toString(ProcessHandle.current().pid()));
+        }
+    }
+
+    // The niceness is the 19th field of /proc/{pid}/stat. The fields are counted from the end of the command name,
+    // which can contain spaces itself.
+    private static Integer readNiceness(String pid) {
+        try {
+            String stat = Files.readString(Path.of("/proc", pid, "stat"));
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Integer.parseInt(fields[16]);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readStatusField(String pid, String field) {
+        try (Stream<String> lines = Files.lines(Path.of("/proc", pid, "status"))) {
+            return lines.filter(line -> line.startsWith(field + ":")).findFirst()
+                    .map(line -> line.substring(field.length() + 1).trim()).orElse(null);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readOnlineCpus() {
+        try {
+            return Files.readString(Path.of("/sys/devices/system/cpu/online")).trim();
+        } catch (IOException e) {
+            int count = Runtime.getRuntime().availableProcessors();
+            return count > 1 ? "0-" + (count - 1) : "0";
+        }
+    }
+
+    private static BitSet parseCpuList(String list) {
+        BitSet cpus = new BitSet();
+        for (String range: list.split(",")) {
+            if (range.isBlank())
+                continue;
+            String[] bounds = range.trim().split("-");
+            int first = Integer.parseInt(bounds[0]);
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1]) : first;
+            cpus.set(first, last + 1);
+        }
+        return cpus;
+    }
+
+    private static String findExecutable(String name) {
+        String path = System.getenv("PATH");
+        List<String> directories = new ArrayList<>(List.of("/usr/bin", "/bin"));
+        if (path != null)
+            directories.addAll(0, List.of(path.split(File.pathSeparator)));
+        for (String directory: directories) {
+            Path candidate = Path.of(directory, name);
+            if (Files.isExecutable(candidate))
+                return candidate.toString();
+        }
+        return null;
+    }
+}
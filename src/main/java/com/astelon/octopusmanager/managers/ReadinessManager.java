@@ -0,0 +1,241 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.ReadinessProbe;
+import com.astelon.octopusmanager.data.StartupStats;
+import com.astelon.octopusmanager.utils.ConsoleSink;
+import com.astelon.octopusmanager.utils.ConsoleSinkFactory;
+import com.astelon.octopusmanager.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
+
+// Runs the readiness probes of starting servers on a shared scheduler. Port and HTTP probes are retried every
+// interval, console probes look at the lines through a console sink. Either way a probe gives up at its timeout.
+// The time from launch to readiness of every server goes into a histogram.
+@Service
+public class ReadinessManager implements ConsoleSinkFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadinessManager.class);
+    private static final long[] LATENCY_BOUNDS = {1000, 2000, 5000, 10000, 20000, 30000, 45000, 60000, 90000, 120000,
+            180000, 300000};
+
+    private final long defaultTimeout;
+    private final long defaultInterval;
+    private final ConcurrentHashMap<String, Probe> probes;
+    private final ConcurrentHashMap<String, LatencyHistogram> latencies;
+    private final ConcurrentHashMap<String, LongAdder> timeouts;
+    private final ScheduledExecutorService probeScheduler;
+    private final HttpClient httpClient;
+
+    public ReadinessManager(AppConfig appConfig) {
+        defaultTimeout = appConfig.getReadinessTimeoutMillis();
+        defaultInterval = Math.max(1, appConfig.getReadinessIntervalMillis());
+        probes = new ConcurrentHashMap<>();
+        latencies = new ConcurrentHashMap<>();
+        timeouts = new ConcurrentHashMap<>();
+        AtomicInteger counter = new AtomicInteger();
+        probeScheduler = Executors.newScheduledThreadPool(Math.max(1, appConfig.getReadinessThreads()),
+                r -> new Thread(r, "Readiness Probe Thread " + counter.incrementAndGet()));
+        httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(defaultInterval))
+                .followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    @Override
+    public String getName() {
+        return "readiness";
+    }
+
+    @Override
+    public ConsoleSink createSink(String serverName) {
+        return (sequence, line) -> {
+            Probe probe = probes.get(serverName);
+            if (probe != null && probe.pattern != null && probe.pattern.matcher(line).find())
+                probe.ready();
+        };
+    }
+
+    // Calls onReady with the startup latency in milliseconds once the probe passes, or onTimeout when it doesn't in
+    // time. Replaces the probe the server may still have.
+    public void watch(String serverName, ReadinessProbe readinessProbe, long launchNanos, LongConsumer onReady,
+                      Runnable onTimeout) {
+        Probe probe = new Probe(serverName, readinessProbe, launchNanos, onReady, onTimeout);
+        Probe previous = probes.put(serverName, probe);
+        if (previous != null)
+            previous.cancel();
+        try {
+            probe.schedule();
+        } catch (RejectedExecutionException e) {
+            logger.debug("The probe scheduler is shut down, not probing server " + serverName + ".");
+            probes.remove(serverName, probe);
+        }
+    }
+
+    public void cancel(String serverName) {
+        Probe probe = probes.remove(serverName);
+        if (probe != null)
+            probe.cancel();
+    }
+
+    public StartupStats getStartupStats(String serverName) {
+        LatencyHistogram histogram = latencies.get(serverName);
+        LongAdder timedOut = timeouts.get(serverName);
+        long timeoutCount = timedOut == null ? 0 : timedOut.sum();
+        if (histogram == null)
+            return new StartupStats(LATENCY_BOUNDS.clone(), new long[LATENCY_BOUNDS.length + 1], 0, 0, 0,
+                    timeoutCount);
+        long count = histogram.getCount();
+        return new StartupStats(histogram.getBounds(), histogram.getCounts(), count,
+                count == 0 ? 0 : histogram.getTotal() / count, histogram.getLast(), timeoutCount);
+    }
+
+    private void recordStartup(String serverName, long latency) {
+        latencies.computeIfAbsent(serverName, key -> new LatencyHistogram(LATENCY_BOUNDS)).record(latency);
+    }
+
+    public void removeServer(String serverName) {
+        cancel(serverName);
+        latencies.remove(serverName);
+        timeouts.remove(serverName);
+    }
+
+    public void shutdown() {
+        probeScheduler.shutdownNow();
+    }
+
+    private boolean checkPort(String host, int port, long timeout) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), (int) Math.min(Integer.MAX_VALUE, timeout));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean checkHttp(URI uri, long timeout) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofMillis(timeout)).GET().build();
+            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 400;
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private class Probe {
+
+        private final String serverName;
+        private final ReadinessProbe readinessProbe;
+        private final Pattern pattern;
+        private final long launchNanos;
+        private final long timeout;
+        private final long interval;
+        private final LongConsumer onReady;
+        private final Runnable onTimeout;
+        private final AtomicBoolean done;
+
+        private volatile ScheduledFuture<?> checkTask;
+        private volatile ScheduledFuture<?> timeoutTask;
+
+        private Probe(String serverName, ReadinessProbe readinessProbe, long launchNanos, LongConsumer onReady,
+                      Runnable onTimeout) {
+            this.serverName = serverName;
+            this.readinessProbe = readinessProbe;
+            pattern = readinessProbe.getType() == ReadinessProbe.Type.CONSOLE ?
+                    Pattern.compile(readinessProbe.getPattern()) : null;
+            this.launchNanos = launchNanos;
+            timeout = readinessProbe.getTimeout() > 0 ? readinessProbe.getTimeout() : defaultTimeout;
+            interval = readinessProbe.getInterval() > 0 ? readinessProbe.getInterval() : defaultInterval;
+            this.onReady = onReady;
+            this.onTimeout = onTimeout;
+            done = new AtomicBoolean();
+        }
+
+        private void schedule() {
+            if (timeout > 0) {
+                long remaining = timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchNanos);
+                timeoutTask = probeScheduler.schedule(this::timedOut, Math.max(0, remaining), TimeUnit.MILLISECONDS);
+            }
+            if (pattern == null)
+                checkTask = probeScheduler.scheduleWithFixedDelay(this::check, 0, interval, TimeUnit.MILLISECONDS);
+            // The probe may have finished before the tasks were assigned.
+            if (done.get())
+                stopTasks();
+        }
+
+        private void check() {
+            if (done.get())
+                return;
+            boolean passed;
+            if (readinessProbe.getType() == ReadinessProbe.Type.PORT) {
+                String host = readinessProbe.getHost() == null || readinessProbe.getHost().isBlank() ? "localhost" :
+                        readinessProbe.getHost();
+                passed = checkPort(host, readinessProbe.getPort(), interval);
+            } else {
+                passed = checkHttp(URI.create(readinessProbe.getUrl()), interval);
+            }
+            if (passed)
+                ready();
+        }
+
+        private void ready() {
+            if (!finish())
+                return;
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchNanos);
+            recordStartup(serverName, latency);
+            onReady.accept(latency);
+        }
+
+        private void timedOut() {
+            if (!finish())
+                return;
+            timeouts.computeIfAbsent(serverName, key -> new LongAdder()).increment();
+            onTimeout.run();
+        }
+
+        private boolean finish() {
+            if (!done.compareAndSet(false, true))
+                return false;
+            probes.remove(serverName, this);
+            stopTasks();
+            return true;
+        }
+
+        private void cancel() {
+            done.set(true);
+            stopTasks();
+        }
+
+        private void stopTasks() {
+            ScheduledFuture<?> task = checkTask;
+            if (task != null)
+                task.cancel(false);
+            task = timeoutTask;
+            if (task != null)
+                task.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.astelon.octopusmanager.managers;
+
+import com.astelon.octopusmanager.configs.AppConfig;
+import com.astelon.octopusmanager.data.ResourceSamples;
+import com.astelon.octopusmanager.data.Server;
+import com.astelon.octopusmanager.utils.ProcessSampler;
+import com.astelon.octopusmanager.utils.ProcessTree;
+import com.astelon.octopusmanager.utils.ResourceHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Samples the CPU, memory, threads, file descriptors and disk I/O of every running server, including the processes it
+// started, on a single thread. Each round publishes the new samples to /topic/resources. The processes of a server come
+// from its process tree, which the process scanner keeps up to date.
+@Service
+public class ResourceManager {
+
+    public static final String RESOURCES_DESTINATION = "/topic/resources";
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceManager.class);
+
+    private final ServerManager serverManager;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int historySize;
+    private final ConcurrentHashMap<String, ResourceHistory> histories;
+    private final ProcessSampler sampler;
+    private final ScheduledExecutorService samplerScheduler;
+
+    public ResourceManager(AppConfig appConfig, ServerManager serverManager, SimpMessagingTemplate messagingTemplate) {
+        this.serverManager = serverManager;
+        this.messagingTemplate = messagingTemplate;
+        historySize = Math.max(1, appConfig.getResourceHistorySize());
+        histories = new ConcurrentHashMap<>();
+        sampler = new ProcessSampler();
+        if (!sampler.isProcAvailable())
+            logger.info("/proc is not available, only the CPU usage of the servers will be sampled.");
+        samplerScheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Resource Sampler Thread"));
+        long interval = appConfig.getResourceSampleIntervalMillis();
+        if (interval > 0)
+            samplerScheduler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public ResourceSamples getSamples(String serverName, long since) {
+        serverManager.getServer(serverName);
+        ResourceHistory history = histories.get(serverName);
+        if (history == null)
+            return new ResourceHistory(1).getSamplesAfter(serverName, 0);
+        return history.getSamplesAfter(serverName, since);
+    }
+
+    public void shutdown() {
+        samplerScheduler.shutdownNow();
+    }
+
+    private void sample() {
+        try {
+            List<ResourceSamples> samples = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            for (Server server: serverManager.getServerList()) {
+                names.add(server.getName());
+                ProcessTree tree = server.getProcessTree();
+                if (tree == null || !tree.getRoot().isAlive())
+                    continue;
+                ProcessHandle handle = tree.getRoot();
+                sampler.reset();
+                tree.getAlive().forEach(sampler::add);
+                ResourceHistory history = histories.computeIfAbsent(server.getName(),
+                        key -> new ResourceHistory(historySize));
+                history.add(handle.pid(), System.currentTimeMillis(), System.nanoTime(), sampler);
+                samples.add(history.getSamplesAfter(server.getName(), history.getLastSequence() - 1));
+            }
+            histories.keySet().retainAll(names);
+            if (!samples.isEmpty())
+                messagingTemplate.convertAndSend(RESOURCES_DESTINATION, samples);
+        } catch (RuntimeException e) {
+            logger.error("Could not sample the resources of the servers.", e);
+        }
+    }
+}
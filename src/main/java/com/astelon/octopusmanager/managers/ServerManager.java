@@ -1,10 +1,17 @@
 package com.astelon.octopusmanager.managers;
 
+import com.astelon.octopusmanager.configs.AppConfig;
 import com.astelon.octopusmanager.configs.ServerConfig;
+import com.astelon.octopusmanager.data.ConsoleTrigger;
 import com.astelon.octopusmanager.data.PartialServerInfo;
 import com.astelon.octopusmanager.data.ServerInfo;
 import com.astelon.octopusmanager.data.Server;
+import com.astelon.octopusmanager.data.TriggerNotification;
 import com.astelon.octopusmanager.exceptions.ServerNotFoundException;
+import com.astelon.octopusmanager.utils.ProcessLauncher;
+import com.astelon.octopusmanager.utils.ProcessScanner;
+import com.astelon.octopusmanager.utils.ProcessTerminator;
+import com.astelon.octopusmanager.utils.RestartBackoff;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,38 +27,92 @@ import org.yaml.snakeyaml.representer.Representer;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
 public class ServerManager {
 
     private static final Logger logger = LoggerFactory.getLogger(ServerManager.class);
+    private static final int LIFECYCLE_THREADS = 2;
 
     private final ConsoleManager consoleManager;
     private final FileManager fileManager;
+    private final ReadinessManager readinessManager;
+    private final PriorityManager priorityManager;
 
     private final SimpMessagingTemplate messagingTemplate;
 
-    private final ArrayList<Server> servers;
-    private final HashMap<String, Server> serverMap;
+    // Lookups go through the map, listings through the copy-on-write list, so neither needs a lock. Adding and
+    // removing servers, which also rewrites servers.yml, is serialized by configLock.
+    private final CopyOnWriteArrayList<Server> servers;
+    private final ConcurrentHashMap<String, Server> serverMap;
 
     private final ServerConfigTemplate serverConfigTemplate;
+    private final Object configLock;
 
-    public ServerManager(ServerConfig serverConfig, ConsoleManager consoleManager, FileManager fileManager,
-                         SimpMessagingTemplate messagingTemplate) {
+    private final long shutdownStopTimeout;
+    private final long shutdownDeadline;
+
+    private final ScheduledExecutorService lifecycleScheduler;
+    private final RestartBackoff restartBackoff;
+    private final ProcessLauncher processLauncher;
+    private final long stopCommandTimeout;
+    private final ProcessScanner processScanner;
+    private final ProcessTerminator processTerminator;
+
+    public ServerManager(AppConfig appConfig, ServerConfig serverConfig, ConsoleManager consoleManager,
+                         FileManager fileManager, ReadinessManager readinessManager,
+                         PriorityManager priorityManager, SimpMessagingTemplate messagingTemplate) {
         this.consoleManager = consoleManager;
         this.fileManager = fileManager;
+        this.readinessManager = readinessManager;
+        this.priorityManager = priorityManager;
         this.messagingTemplate = messagingTemplate;
-        servers = new ArrayList<>();
-        serverMap = new HashMap<>();
+        servers = new CopyOnWriteArrayList<>();
+        serverMap = new ConcurrentHashMap<>();
+        configLock = new Object();
+        shutdownStopTimeout = appConfig.getShutdownStopTimeoutMillis();
+        shutdownDeadline = appConfig.getShutdownDeadlineMillis();
+        AtomicInteger counter = new AtomicInteger();
+        lifecycleScheduler = Executors.newScheduledThreadPool(LIFECYCLE_THREADS,
+                r -> new Thread(r, "Server Lifecycle Thread " + counter.incrementAndGet()));
+        restartBackoff = new RestartBackoff(appConfig.getRestartBackoffInitialMillis(),
+                appConfig.getRestartBackoffMaxMillis(), appConfig.getRestartBackoffMultiplier(),
+                appConfig.getRestartBackoffJitter());
+        processLauncher = new ProcessLauncher(appConfig.isProcessReattachEnabled(),
+                Path.of(appConfig.getRuntimeDirectory()), Path.of(appConfig.getRuntimeJournalFile()));
+        stopCommandTimeout = appConfig.getStopCommandTimeoutMillis();
+        processScanner = new ProcessScanner(appConfig.getProcessTreeRefreshIntervalMillis());
+        processTerminator = new ProcessTerminator(appConfig.getProcessTermTimeoutMillis(),
+                appConfig.getProcessKillTimeoutMillis(), processScanner, lifecycleScheduler);
         for (Map.Entry<String, ServerInfo> entry: serverConfig.getServers().entrySet()) {
-            Server server = new Server(consoleManager, fileManager, entry.getKey(), entry.getValue(), messagingTemplate);
+            Server server = new Server(consoleManager, fileManager, entry.getKey(), entry.getValue(),
+                    messagingTemplate, lifecycleScheduler, restartBackoff, readinessManager, processLauncher,
+                    processTerminator, priorityManager, appConfig.getStopCommandTimeoutMillis());
             servers.add(server);
             serverMap.put(server.getName(), server);
+            consoleManager.setTriggers(server.getName(), entry.getValue().getTriggers(), this::runTrigger);
+        }
+        if (processLauncher.isReattachEnabled()) {
+            for (Server server: servers) {
+                if (server.reattach())
+                    logger.info("Reattached to the running process of server " + server.getName() + ".");
+            }
         }
         serverConfigTemplate = new ServerConfigTemplate();
         serverConfigTemplate.setManaged(serverConfig);
@@ -66,28 +127,38 @@ public class ServerManager {
     }
 
     public void startServer(String serverName) {
+        boolean started;
         try {
-            getServer(serverName).start();
+            started = getServer(serverName).start();
         } catch (IOException e) {
             logger.error("Could not start server " + serverName + ".", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Server could not be started.", e);
         }
+        if (!started)
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The server is already running.");
     }
 
     public void stopServer(String serverName) {
-        getServer(serverName).stop();
+        if (!getServer(serverName).stop())
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The server is not running.");
     }
 
     public void killServer(String serverName) {
-        getServer(serverName).kill();
+        if (!getServer(serverName).kill())
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The server is not running.");
     }
 
     public void restartServer(String serverName) {
-        getServer(serverName).restart();
+        if (!getServer(serverName).restart())
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The server is not running.");
     }
 
     @NotNull
-    private Server getServer(String name) {
+    List<Server> getServerList() {
+        return Collections.unmodifiableList(servers);
+    }
+
+    Server getServer(String name) {
         Server server = serverMap.get(name);
         if (server == null)
             throw new ServerNotFoundException(name);
@@ -95,7 +166,10 @@ public class ServerManager {
     }
 
     public ServerInfo getServerInfo(String name) {
-        ServerInfo info = serverConfigTemplate.managed.getServers().get(name);
+        ServerInfo info;
+        synchronized (configLock) {
+            info = serverConfigTemplate.managed.getServers().get(name);
+        }
         if (info == null)
             throw new ServerNotFoundException(name);
         return info;
@@ -104,46 +178,148 @@ public class ServerManager {
     public void createServer(String name, ServerInfo info) {
         if (name == null || name.isEmpty() || name.isBlank())
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
-        info.validate();
-        if (serverMap.containsKey(name))
-            throw new ResponseStatusException(HttpStatus.CONFLICT);
-        Server server = new Server(consoleManager, fileManager, name, info, messagingTemplate);
-        servers.add(server);
-        serverMap.put(name, server);
-        consoleManager.addServerConsole(server);
-        fileManager.addServerDirectories(name, info);
-        serverConfigTemplate.managed.getServers().put(name, info);
-        saveConfig();
+        info.validate(name);
+        synchronized (configLock) {
+            if (serverMap.containsKey(name))
+                throw new ResponseStatusException(HttpStatus.CONFLICT);
+            Server server = new Server(consoleManager, fileManager, name, info, messagingTemplate,
+                    lifecycleScheduler, restartBackoff, readinessManager, processLauncher,
+                    processTerminator, priorityManager, stopCommandTimeout);
+            consoleManager.addServerConsole(server);
+            consoleManager.setTriggers(name, info.getTriggers(), this::runTrigger);
+            fileManager.addServerDirectories(name, info);
+            serverMap.put(name, server);
+            servers.add(server);
+            serverConfigTemplate.managed.getServers().put(name, info);
+            saveConfig();
+        }
     }
 
     public void removeServer(String name) {
-        Server server = getServer(name);
-        if (server.isOnline())
-            throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED);
-        servers.remove(server);
-        serverMap.remove(name);
-        serverConfigTemplate.managed.getServers().remove(name);
-        fileManager.removeServerDirectories(name);
-        consoleManager.removeServerConsole(name);
-        saveConfig();
+        synchronized (configLock) {
+            Server server = getServer(name);
+            if (!server.remove())
+                throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED);
+            servers.remove(server);
+            serverMap.remove(name);
+            serverConfigTemplate.managed.getServers().remove(name);
+            fileManager.removeServerDirectories(name);
+            consoleManager.removeServerConsole(name);
+            readinessManager.removeServer(name);
+            saveConfig();
+        }
     }
 
     public void updateServer(String name, ServerInfo info) {
-        Server server = getServer(name);
-        if (server.isOnline())
-            throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED);
-        server.setCommand(info.getCommand());
-        server.setWorkingDirectory(info.getWorkingDirectory());
-        server.setTimeBetweenCrashes(info.getTimeBetweenCrashes());
-        server.setRestartAttempts(info.getRestartAttempts());
-        serverConfigTemplate.managed.getServers().put(name, info);
-        fileManager.updateServerDirectories(name, info);
-        saveConfig();
+        synchronized (configLock) {
+            Server server = getServer(name);
+            info.validate(name);
+            boolean updated = server.update(() -> {
+                server.setCommand(info.getCommand());
+                server.setWorkingDirectory(info.getWorkingDirectory());
+                server.setTimeBetweenCrashes(info.getTimeBetweenCrashes());
+                server.setRestartAttempts(info.getRestartAttempts());
+                server.setStopCommand(info.getStopCommand());
+                server.setReadinessProbe(info.getReadinessProbe());
+                server.setPriority(info.getPriority());
+            });
+            if (!updated)
+                throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED);
+            consoleManager.setTriggers(name, info.getTriggers(), this::runTrigger);
+            serverConfigTemplate.managed.getServers().put(name, info);
+            fileManager.updateServerDirectories(name, info);
+            saveConfig();
+        }
     }
 
+    public List<String> getServersInGroup(String group) {
+        synchronized (configLock) {
+            return serverConfigTemplate.managed.getServers().entrySet().stream()
+                    .filter(entry -> entry.getValue().getGroups() != null &&
+                            entry.getValue().getGroups().contains(group))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void runTrigger(String serverName, ConsoleTrigger trigger, String line) {
+        Server server = serverMap.get(serverName);
+        if (server == null)
+            return;
+        switch (trigger.getAction()) {
+            case NOTIFY:
+                messagingTemplate.convertAndSend("/topic/triggers/" + serverName,
+                        new TriggerNotification(trigger.getPattern(), trigger.getArgument(), line));
+                break;
+            case COMMAND:
+                consoleManager.writeToConsole(serverName, trigger.getArgument());
+                break;
+            case STOP:
+                server.stop();
+                break;
+            case RESTART:
+                server.restart();
+                break;
+            case KILL:
+                server.kill();
+                break;
+        }
+    }
+
+    // Stops every server at once, kills the ones that are still running after the stop timeout and gives up on the
+    // rest at the shutdown deadline, so stopping the manager takes a bounded time. With reattaching enabled the servers
+    // are left running instead, for the next manager to take over.
     public void shutdown() {
-        for (Server server: servers)
-            server.stop();
+        try {
+            if (processLauncher.isReattachEnabled())
+                logger.info("Leaving the servers running to reattach to them after the restart.");
+            else
+                stopServers();
+        } finally {
+            lifecycleScheduler.shutdownNow();
+            processScanner.shutdown();
+        }
+    }
+
+    private void stopServers() {
+        long start = System.currentTimeMillis();
+        long deadline = start + shutdownDeadline;
+        Map<Server, CompletableFuture<Void>> exits = new HashMap<>();
+        for (Server server: servers) {
+            CompletableFuture<Void> exit = server.getExitFuture();
+            if (server.stop() || server.getStatus() == Server.Status.STOPPING)
+                exits.put(server, exit);
+        }
+        if (exits.isEmpty())
+            return;
+        logger.info("Stopping " + exits.size() + " servers.");
+        awaitExits(exits.values(), Math.min(start + shutdownStopTimeout, deadline));
+        List<Server> remaining = exits.entrySet().stream().filter(entry -> !entry.getValue().isDone())
+                .map(Map.Entry::getKey).collect(Collectors.toList());
+        if (remaining.isEmpty())
+            return;
+        for (Server server: remaining) {
+            logger.warn("Server " + server.getName() + " did not stop in time, killing it.");
+            server.kill();
+        }
+        awaitExits(remaining.stream().map(exits::get).collect(Collectors.toList()), deadline);
+        for (Server server: remaining) {
+            if (!exits.get(server).isDone())
+                logger.error("Server " + server.getName() + " was still running at the shutdown deadline.");
+        }
+    }
+
+    private void awaitExits(Collection<CompletableFuture<Void>> exits, long until) {
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, until - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The caller checks which servers are still running.
+        } catch (ExecutionException e) {
+            logger.warn("Could not handle the exit of a server.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void saveConfig() {
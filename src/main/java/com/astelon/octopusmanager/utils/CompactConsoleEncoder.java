@@ -0,0 +1,46 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Encodes console lines as: a version byte, the epoch as a varint byte length followed by its UTF-8 bytes (empty when
+// there is none), the sequence of the first line and the line count as unsigned LEB128 varints, then every line as a
+// varint byte length followed by its UTF-8 bytes, skipped lines being empty. The lines are consecutive, so the
+// last sequence is the first sequence plus the count minus one. The output has no per-line framing besides the
+// length, so repeated text compresses well with permessage-deflate.
+public final class CompactConsoleEncoder {
+
+    public static final byte VERSION = 2;
+
+    public static byte[] encode(ConsoleLines lines) {
+        return encode(lines.getEpoch(), lines.getFirstSequence(), lines.getLines());
+    }
+
+    public static byte[] encode(String epoch, long firstSequence, List<String> lines) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 + lines.size() * 64);
+        output.write(VERSION);
+        writeString(output, epoch == null ? "" : epoch);
+        writeVarint(output, firstSequence);
+        writeVarint(output, lines.size());
+        for (String line: lines)
+            writeString(output, line == null ? "" : line);
+        return output.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+}
@@ -0,0 +1,143 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConsoleBroadcaster implements ConsoleSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleBroadcaster.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final String epoch;
+    private final String destination;
+    private final String compactDestination;
+    private final int batchSize;
+    private final long flushInterval;
+    private final ScheduledExecutorService flushScheduler;
+    private final Object sendLock;
+    private final LongAdder framesSent;
+    private final LongAdder compactFramesSent;
+    private final LongAdder sendTime;
+
+    private List<String> pending;
+    private long firstSequence;
+    private long lastSequence;
+    private boolean flushScheduled;
+
+    // When compact is true, batches are also sent to /topic/compact/{serverName} in the CompactConsoleEncoder format,
+    // but only while someone is subscribed to it.
+    public ConsoleBroadcaster(SimpMessagingTemplate messagingTemplate, SimpUserRegistry userRegistry,
+                              String serverName, String epoch, int batchSize, long flushInterval,
+                              ScheduledExecutorService flushScheduler, boolean compact) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.epoch = epoch;
+        destination = "/topic/console/" + serverName;
+        compactDestination = compact ? "/topic/compact/" + serverName : null;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+        this.flushScheduler = flushScheduler;
+        sendLock = new Object();
+        framesSent = new LongAdder();
+        compactFramesSent = new LongAdder();
+        sendTime = new LongAdder();
+        pending = new ArrayList<>(this.batchSize);
+    }
+
+    @Override
+    public void accept(long sequence, String line) {
+        if (addLine(sequence, line))
+            flush();
+    }
+
+    // The lines after a gap go into a batch of their own, since a batch is only labelled with its first and last
+    // sequence and its lines must be consecutive.
+    @Override
+    public void skipped(long count) {
+        flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    // Returns true when the batch is full and should be flushed.
+    private synchronized boolean addLine(long sequence, String line) {
+        if (pending.isEmpty())
+            firstSequence = sequence;
+        lastSequence = sequence;
+        pending.add(line);
+        if (pending.size() >= batchSize || flushInterval <= 0)
+            return true;
+        if (!flushScheduled) {
+            try {
+                flushScheduler.schedule(this::scheduledFlush, flushInterval, TimeUnit.MILLISECONDS);
+                flushScheduled = true;
+            } catch (RejectedExecutionException e) {
+                logger.debug("The console flush scheduler is shut down, flushing " + destination + " directly.");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void flush() {
+        synchronized (sendLock) {
+            ConsoleLines batch;
+            synchronized (this) {
+                if (pending.isEmpty())
+                    return;
+                batch = new ConsoleLines(epoch, firstSequence, lastSequence, Collections.unmodifiableList(pending));
+                pending = new ArrayList<>(batchSize);
+            }
+            long start = System.nanoTime();
+            Map<String, Object> headers = Map.of(ConsoleSubscriberGuard.LINE_COUNT_HEADER,
+                    Integer.toString(batch.getLines().size()));
+            messagingTemplate.convertAndSend(destination, batch, headers);
+            framesSent.increment();
+            if (hasCompactSubscribers()) {
+                messagingTemplate.convertAndSend(compactDestination, CompactConsoleEncoder.encode(batch), headers);
+                compactFramesSent.increment();
+            }
+            sendTime.add(System.nanoTime() - start);
+        }
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getCompactFramesSent() {
+        return compactFramesSent.sum();
+    }
+
+    public long getSendTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(sendTime.sum());
+    }
+
+    private boolean hasCompactSubscribers() {
+        return compactDestination != null && !userRegistry.findSubscriptions(subscription ->
+                compactDestination.equals(subscription.getDestination())).isEmpty();
+    }
+
+    private void scheduledFlush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        flush();
+    }
+}
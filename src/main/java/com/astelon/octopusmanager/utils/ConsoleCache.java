@@ -1,39 +1,177 @@
 package com.astelon.octopusmanager.utils;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import com.astelon.octopusmanager.data.ConsoleLines;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class ConsoleCache {
+public class ConsoleCache implements ConsoleSink {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final String serverName;
-    private final int cacheSize;
-    private final ConcurrentLinkedQueue<String> cache;
+    // Approximate heap cost of a byte array besides its content.
+    private static final int ENTRY_OVERHEAD = 16;
+    // Fills the slots of skipped lines after the first one, which holds a message about them. Costs no bytes.
+    private static final byte[] SKIPPED = new byte[0];
 
-    private int currentSize;
+    private final ConsoleMemoryGovernor governor;
+    private final int capacity;
+    private final long maxBytes;
+    private final AtomicReferenceArray<byte[]> lines;
+    // Only the sink consumer of the pipeline writes, so the lock is uncontended except while the governor evicts from
+    // another thread. Eviction moves firstSequence, clears slots and releases their bytes, and a write can reuse one of
+    // those slots, so the two have to agree on all three, which a CAS on firstSequence alone would not cover.
+    private final Object writeLock;
 
-    public ConsoleCache(SimpMessagingTemplate messagingTemplate, String serverName, int cacheSize) {
-        this.messagingTemplate = messagingTemplate;
-        this.serverName = serverName;
-        this.cacheSize = cacheSize;
-        cache = new ConcurrentLinkedQueue<>();
+    private volatile long firstSequence;
+    private volatile long lastSequence;
+    private volatile long bytes;
+
+    public ConsoleCache(ConsoleMemoryGovernor governor, int cacheSize, long maxBytes) {
+        this.governor = governor;
+        capacity = Math.max(1, cacheSize);
+        this.maxBytes = maxBytes;
+        lines = new AtomicReferenceArray<>(capacity);
+        writeLock = new Object();
+        firstSequence = 1;
     }
 
-    public void addLine(String line) {
-        if (currentSize == cacheSize)
-            cache.poll();
-        else
-            currentSize++;
-        cache.add(line);
-        messagingTemplate.convertAndSend("/topic/console/" + serverName, line);
+    // Lines are kept as UTF-8 and come in sequence order, with gaps only when lines were skipped. The lines before a
+    // gap are kept, the gap itself takes up the slots of the skipped lines. The oldest lines are evicted when the
+    // cache is over its line or byte limit. Eviction advances firstSequence before a slot is cleared or reused, so
+    // readers can validate their snapshots without the lock.
+    @Override
+    public void accept(long sequence, String line) {
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        synchronized (writeLock) {
+            if (firstSequence > lastSequence) {
+                firstSequence = sequence;
+            } else if (sequence <= lastSequence) {
+                // A new numbering, nothing cached can be told apart from the new lines.
+                evictBefore(lastSequence + 1);
+                lastSequence = sequence - 1;
+                firstSequence = sequence;
+            } else if (sequence > lastSequence + 1) {
+                skip(sequence);
+            }
+            if (sequence - firstSequence >= capacity)
+                evictOldest();
+            lines.set(index(sequence), data);
+            addBytes(data.length + ENTRY_OVERHEAD);
+            lastSequence = sequence;
+            while (maxBytes > 0 && bytes > maxBytes && firstSequence < sequence)
+                evictOldest();
+        }
+        governor.reclaim();
     }
 
     public List<String> getCachedLines() {
-        ArrayList<String> view = new ArrayList<>(cache);
-        return Collections.unmodifiableList(view);
+        List<String> result = new ArrayList<>(getLinesAfter(0).getLines());
+        result.removeIf(Objects::isNull);
+        return result;
+    }
+
+    // A sequence ahead of the cache belongs to an earlier run of the manager, so the whole cache is returned then.
+    // Skipped lines after the first one of a gap are null, so the lines stay numbered by their position.
+    public ConsoleLines getLinesAfter(long sequence) {
+        long last = lastSequence;
+        if (sequence > last)
+            sequence = 0;
+        long first = Math.max(sequence + 1, firstSequence);
+        if (first > last)
+            return new ConsoleLines(last + 1, last, Collections.emptyList());
+        byte[][] snapshot = new byte[(int) (last - first + 1)][];
+        for (long current = first; current <= last; current++)
+            snapshot[(int) (current - first)] = lines.get(index(current));
+        // Lines older than this may have been evicted or had their slots reused while copying. The check has to use
+        // firstSequence, which moves before a slot is touched, and not lastSequence, which only moves after the write
+        // into a reused slot. Eviction goes from the oldest line, so a cleared slot also means every line before it is
+        // gone.
+        int skipped = (int) Math.max(0, firstSequence - first);
+        for (int i = snapshot.length - 1; i >= skipped; i--) {
+            if (snapshot[i] == null) {
+                skipped = i + 1;
+                break;
+            }
+        }
+        if (skipped >= snapshot.length)
+            return new ConsoleLines(last + 1, last, Collections.emptyList());
+        List<String> result = new ArrayList<>(snapshot.length - skipped);
+        for (int i = skipped; i < snapshot.length; i++)
+            result.add(snapshot[i] == SKIPPED ? null : new String(snapshot[i], StandardCharsets.UTF_8));
+        return new ConsoleLines(first + skipped, last, Collections.unmodifiableList(result));
+    }
+
+    // Evicts the oldest lines until the cache uses at most the given amount of bytes. Returns the bytes released.
+    public long evictTo(long targetBytes) {
+        synchronized (writeLock) {
+            long before = bytes;
+            while (bytes > targetBytes && firstSequence <= lastSequence)
+                evictOldest();
+            return before - bytes;
+        }
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        return (int) Math.max(0, lastSequence - firstSequence + 1);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // The first skipped slot that fits in the ring gets a message about the gap. Lines whose slots the gap reuses are
+    // released in a single pass after firstSequence has moved past them.
+    private void skip(long sequence) {
+        long gapStart = lastSequence + 1;
+        evictBefore(Math.max(firstSequence, sequence - capacity + 1));
+        long start = Math.max(gapStart, firstSequence);
+        for (long current = start; current < sequence; current++) {
+            if (current == start) {
+                byte[] message = ("[OctopusManager] " + (sequence - gapStart) + " lines were skipped because the " +
+                        "console fell behind.").getBytes(StandardCharsets.UTF_8);
+                lines.set(index(current), message);
+                addBytes(message.length + ENTRY_OVERHEAD);
+            } else {
+                lines.set(index(current), SKIPPED);
+            }
+        }
+        lastSequence = sequence - 1;
+    }
+
+    private void evictOldest() {
+        evictBefore(firstSequence + 1);
+    }
+
+    private void evictBefore(long sequence) {
+        long first = firstSequence;
+        if (sequence <= first)
+            return;
+        firstSequence = sequence;
+        long end = Math.min(sequence - 1, lastSequence);
+        for (long current = first; current <= end; current++) {
+            byte[] data = lines.getAndSet(index(current), null);
+            if (data != null && data != SKIPPED)
+                addBytes(-(data.length + ENTRY_OVERHEAD));
+        }
+    }
+
+    private void addBytes(long delta) {
+        bytes += delta;
+        governor.add(delta);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
     }
 }
@@ -0,0 +1,109 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.CommandOutput;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Collects the lines a process prints after a command was written, until the terminator matches, no line arrives for
+// the quiet period, the timeout expires or maxLines lines were collected. Lines are added by the read thread only,
+// the timers run on the shared scheduler.
+public class ConsoleCapture {
+
+    private final Pattern terminator;
+    private final long quietPeriod;
+    private final long timeout;
+    private final int maxLines;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<CommandOutput> result;
+    private final List<String> lines;
+
+    private volatile long lastLineTime;
+    private boolean done;
+    private ScheduledFuture<?> timeoutTask;
+    private ScheduledFuture<?> quietTask;
+
+    public ConsoleCapture(Pattern terminator, long quietPeriod, long timeout, int maxLines,
+                          ScheduledExecutorService scheduler) {
+        this.terminator = terminator;
+        this.quietPeriod = quietPeriod;
+        this.timeout = timeout;
+        this.maxLines = Math.max(1, maxLines);
+        this.scheduler = scheduler;
+        result = new CompletableFuture<>();
+        lines = new ArrayList<>();
+    }
+
+    public synchronized void start() {
+        lastLineTime = System.nanoTime();
+        try {
+            timeoutTask = scheduler.schedule(() -> complete(CommandOutput.Reason.TIMEOUT), timeout,
+                    TimeUnit.MILLISECONDS);
+            if (quietPeriod > 0)
+                quietTask = scheduler.schedule(this::checkQuiet, quietPeriod, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            complete(CommandOutput.Reason.STOPPED);
+        }
+    }
+
+    public void addLine(String line) {
+        synchronized (this) {
+            if (done)
+                return;
+            lines.add(line);
+            lastLineTime = System.nanoTime();
+        }
+        if (terminator != null && terminator.matcher(line).find())
+            complete(CommandOutput.Reason.TERMINATOR);
+        else if (lines.size() >= maxLines)
+            complete(CommandOutput.Reason.LIMIT);
+    }
+
+    public void complete(CommandOutput.Reason reason) {
+        CommandOutput output;
+        synchronized (this) {
+            if (done)
+                return;
+            done = true;
+            output = new CommandOutput(Collections.unmodifiableList(new ArrayList<>(lines)), reason);
+            if (timeoutTask != null)
+                timeoutTask.cancel(false);
+            if (quietTask != null)
+                quietTask.cancel(false);
+        }
+        result.complete(output);
+    }
+
+    public CompletableFuture<CommandOutput> getResult() {
+        return result;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    // Instead of rescheduling on every line, the check runs again at the end of the quiet period of the last line.
+    private void checkQuiet() {
+        synchronized (this) {
+            if (done)
+                return;
+            long remaining = quietPeriod - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastLineTime);
+            if (remaining > 0) {
+                try {
+                    quietTask = scheduler.schedule(this::checkQuiet, remaining, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // The scheduler is shutting down, the capture ends now.
+                }
+            }
+        }
+        complete(CommandOutput.Reason.QUIET);
+    }
+}
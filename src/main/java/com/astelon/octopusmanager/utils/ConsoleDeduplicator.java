@@ -0,0 +1,171 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Collapses identical consecutive lines, optionally ignoring a prefix such as a timestamp. The first line of a run is
+// passed on, the repeats are only counted. While the run goes on, its count is reported every interval. The run ends
+// with a final report when a different line arrives, when no repeat arrived for an interval, or when the stream ends.
+// The output and the listener may block, so they are never called under the lock. Reports found by the scheduler are
+// delivered on the report executor, so a slow console doesn't hold up the scheduler that other consoles share.
+public class ConsoleDeduplicator {
+
+    private final Pattern ignoredPrefix;
+    private final long interval;
+    private final ScheduledExecutorService scheduler;
+    private final Executor reportExecutor;
+    private final ToLongFunction<String> output;
+    private final RepeatListener listener;
+    private final Object deliveryLock;
+
+    private String lastLine;
+    private String lastKey;
+    private long lastSequence;
+    private long run;
+    private long repeats;
+    private long reportedRepeats;
+    private long lastRepeatTime;
+    private boolean tickScheduled;
+
+    // Guarded by deliveryLock. Reports can reach it out of order, the stale ones are skipped.
+    private long deliveredRun;
+    private long deliveredRepeats;
+    private boolean deliveredFinished;
+
+    public ConsoleDeduplicator(Pattern ignoredPrefix, long interval, ScheduledExecutorService scheduler,
+                               Executor reportExecutor, ToLongFunction<String> output, RepeatListener listener) {
+        this.ignoredPrefix = ignoredPrefix;
+        this.interval = Math.max(1, interval);
+        this.scheduler = scheduler;
+        this.reportExecutor = reportExecutor;
+        this.output = output;
+        this.listener = listener;
+        deliveryLock = new Object();
+    }
+
+    // Returns true when the line was passed on.
+    public boolean accept(String line) {
+        String key = getKey(line);
+        Report report;
+        synchronized (this) {
+            if (key.equals(lastKey)) {
+                repeats++;
+                lastRepeatTime = System.nanoTime();
+                scheduleTick();
+                return false;
+            }
+            report = endRun();
+            lastLine = line;
+            lastKey = key;
+            run++;
+        }
+        // The report of the previous run comes before the line that ended it.
+        deliver(report);
+        long sequence = output.applyAsLong(line);
+        // No repeat of the line can be counted before the next call, which comes from the same thread.
+        synchronized (this) {
+            lastSequence = sequence;
+        }
+        return true;
+    }
+
+    public void finish() {
+        Report report;
+        synchronized (this) {
+            report = endRun();
+            lastLine = null;
+            lastKey = null;
+        }
+        deliver(report);
+    }
+
+    private void tick() {
+        Report report;
+        synchronized (this) {
+            tickScheduled = false;
+            if (repeats == 0)
+                return;
+            if (System.nanoTime() - lastRepeatTime >= TimeUnit.MILLISECONDS.toNanos(interval)) {
+                report = endRun();
+                lastLine = null;
+                lastKey = null;
+            } else if (repeats != reportedRepeats) {
+                reportedRepeats = repeats;
+                report = new Report(run, lastSequence, lastLine, repeats, false);
+                scheduleTick();
+            } else {
+                scheduleTick();
+                return;
+            }
+        }
+        try {
+            reportExecutor.execute(() -> deliver(report));
+        } catch (RejectedExecutionException e) {
+            deliver(report);
+        }
+    }
+
+    // Returns the final report of the current run, or null when it had no repeats.
+    private Report endRun() {
+        if (repeats == 0)
+            return null;
+        Report report = new Report(run, lastSequence, lastLine, repeats, true);
+        repeats = 0;
+        reportedRepeats = 0;
+        return report;
+    }
+
+    private void deliver(Report report) {
+        if (report == null)
+            return;
+        synchronized (deliveryLock) {
+            if (report.run < deliveredRun || (report.run == deliveredRun &&
+                    (deliveredFinished || (!report.finished && report.repeats <= deliveredRepeats))))
+                return;
+            deliveredRun = report.run;
+            deliveredRepeats = report.repeats;
+            deliveredFinished = report.finished;
+            listener.repeated(report.sequence, report.line, report.repeats, report.finished);
+        }
+    }
+
+    private void scheduleTick() {
+        if (tickScheduled)
+            return;
+        try {
+            scheduler.schedule(this::tick, interval, TimeUnit.MILLISECONDS);
+            tickScheduled = true;
+        } catch (RejectedExecutionException e) {
+            // The scheduler is shutting down, the run is reported when it ends.
+        }
+    }
+
+    private String getKey(String line) {
+        if (ignoredPrefix == null)
+            return line;
+        Matcher matcher = ignoredPrefix.matcher(line);
+        return matcher.lookingAt() ? line.substring(matcher.end()) : line;
+    }
+
+    private static class Report {
+
+        private final long run;
+        private final long sequence;
+        private final String line;
+        private final long repeats;
+        private final boolean finished;
+
+        private Report(long run, long sequence, String line, long repeats, boolean finished) {
+            this.run = run;
+            this.sequence = sequence;
+            this.line = line;
+            this.repeats = repeats;
+            this.finished = finished;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.astelon.octopusmanager.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ConsoleExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleExecutors.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // Idle threads of the shared pools time out, so the thread count follows the number of running processes.
+    public static ExecutorService create(Mode mode, String threadName, int maxThreads) {
+        ExecutorService virtual = getVirtual(mode, threadName);
+        if (virtual != null)
+            return virtual;
+        int threads = Math.max(1, maxThreads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), createThreadFactory(threadName));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // For tasks that block as long as a process runs, such as reading its output. A bounded pool would leave the tasks
+    // of the processes beyond its size waiting in the queue, so every task gets a thread.
+    public static ExecutorService createUnbounded(Mode mode, String threadName) {
+        ExecutorService virtual = getVirtual(mode, threadName);
+        if (virtual != null)
+            return virtual;
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), createThreadFactory(threadName));
+    }
+
+    private static ExecutorService getVirtual(Mode mode, String threadName) {
+        if (mode != Mode.VIRTUAL)
+            return null;
+        ExecutorService executor = createVirtual();
+        if (executor == null)
+            logger.warn("Virtual threads are not available on this Java version, using a shared pool for " +
+                    threadName + " instead.");
+        return executor;
+    }
+
+    private static ThreadFactory createThreadFactory(String threadName) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, threadName + " " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ExecutorService createVirtual() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public enum Mode {
+        SHARED,
+        VIRTUAL
+    }
+}
@@ -0,0 +1,392 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Every console line is appended to segment files named after the number of their first line. Each segment has a
+// .log file with the raw output and a memory-mapped .idx file with the line count followed by the end offset of every
+// line, so any page of lines can be located without scanning the output. Closed segments are gzipped in the
+// background and the oldest ones are deleted once there are more than maxSegments.
+public class ConsoleHistory implements ConsoleSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleHistory.class);
+
+    private static final int INDEX_ENTRIES = 1 << 16;
+    private static final long INDEX_SIZE = (INDEX_ENTRIES + 1) * (long) Long.BYTES;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String LOG_EXTENSION = ".log";
+    private static final String COMPRESSED_EXTENSION = ".log.gz";
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private final String serverName;
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final ExecutorService historyExecutor;
+
+    private final TreeMap<Long, Segment> segments;
+    private final ByteBuffer writeBuffer;
+
+    private Segment current;
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private long position;
+    private boolean closed;
+
+    public ConsoleHistory(String serverName, Path directory, long segmentSize, int maxSegments,
+                          ExecutorService historyExecutor) throws IOException {
+        this.serverName = serverName;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.historyExecutor = historyExecutor;
+        segments = new TreeMap<>();
+        writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    @Override
+    public void accept(long sequence, String line) {
+        append(line);
+    }
+
+    @Override
+    public void skipped(long count) {
+        append("[OctopusManager] " + count + " lines were not saved because the history fell behind.");
+    }
+
+    public synchronized void append(String line) {
+        if (closed)
+            return;
+        try {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            if (current.count == INDEX_ENTRIES || (position > 0 && position + bytes.length > segmentSize))
+                rotate();
+            if (bytes.length > writeBuffer.remaining())
+                flushBuffer();
+            if (bytes.length > writeBuffer.capacity())
+                writeFully(ByteBuffer.wrap(bytes));
+            else
+                writeBuffer.put(bytes);
+            position += bytes.length;
+            index.putLong((int) ((current.count + 1) * Long.BYTES), position);
+            current.count++;
+            index.putLong(0, current.count);
+        } catch (IOException e) {
+            logger.error("Could not write to the console history of server " + serverName + ".", e);
+            close();
+        }
+    }
+
+    public synchronized void flush() {
+        if (closed)
+            return;
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            logger.error("Could not flush the console history of server " + serverName + ".", e);
+        }
+    }
+
+    public ConsoleLines getLinesBefore(long before, int limit) throws IOException {
+        List<Segment> views = new ArrayList<>();
+        long first;
+        long last;
+        synchronized (this) {
+            if (!closed)
+                flushBuffer();
+            Segment latest = segments.isEmpty() ? null : segments.lastEntry().getValue();
+            long end = latest == null ? 1 : latest.first + latest.count;
+            long start = segments.isEmpty() ? 1 : segments.firstKey();
+            last = before <= 0 || before > end ? end - 1 : before - 1;
+            first = Math.max(start, last - limit + 1);
+            if (first > last)
+                return new ConsoleLines(last + 1, last, Collections.emptyList());
+            Long floor = segments.floorKey(first);
+            for (Segment segment: segments.tailMap(floor == null ? first : floor).values()) {
+                if (segment.first > last)
+                    break;
+                views.add(new Segment(segment.first, segment.count));
+            }
+        }
+        List<String> lines = new ArrayList<>((int) (last - first + 1));
+        for (Segment segment: views) {
+            long from = Math.max(first, segment.first);
+            long to = Math.min(last, segment.first + segment.count - 1);
+            if (from > to)
+                continue;
+            try {
+                readLines(segment, from, to, lines);
+            } catch (NoSuchFileException e) {
+                // A rotation deleted the segment after it was listed. Segments go from the oldest, so the lines read
+                // before it are older still and are dropped too, to keep the page contiguous.
+                lines.clear();
+            }
+        }
+        return new ConsoleLines(last - lines.size() + 1, last, Collections.unmodifiableList(lines));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            logger.error("Could not flush the console history of server " + serverName + ".", e);
+        }
+        closeCurrent();
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path: (Iterable<Path>) files::iterator) {
+                String fileName = path.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                if (!fileName.endsWith(INDEX_EXTENSION))
+                    continue;
+                try {
+                    long first = Long.parseLong(fileName.substring(0, fileName.length() - INDEX_EXTENSION.length()));
+                    segments.put(first, new Segment(first, readCount(path)));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unknown file " + path + " in the console history of server " + serverName + ".");
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+            return;
+        }
+        Segment latest = segments.lastEntry().getValue();
+        for (Segment segment: segments.values()) {
+            if (segment != latest && Files.exists(logPath(segment.first)))
+                scheduleCompression(segment.first);
+        }
+        if (Files.exists(compressedPath(latest.first)))
+            openSegment(latest.first + latest.count);
+        else
+            reopenSegment(latest);
+    }
+
+    private long readCount(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            channel.read(buffer, 0);
+            buffer.flip();
+            return buffer.remaining() == Long.BYTES ? buffer.getLong() : 0;
+        }
+    }
+
+    // Lines whose bytes did not reach the disk before the manager stopped are dropped from the index.
+    private void reopenSegment(Segment segment) throws IOException {
+        mapCurrent(segment);
+        long size = dataChannel.size();
+        long count = Math.min(segment.count, INDEX_ENTRIES);
+        while (count > 0 && index.getLong((int) (count * Long.BYTES)) > size)
+            count--;
+        segment.count = count;
+        index.putLong(0, count);
+        position = count == 0 ? 0 : index.getLong((int) (count * Long.BYTES));
+        dataChannel.truncate(position);
+    }
+
+    private void openSegment(long first) throws IOException {
+        Segment segment = new Segment(first, 0);
+        segments.put(first, segment);
+        mapCurrent(segment);
+        index.putLong(0, 0);
+        position = 0;
+        dataChannel.truncate(0);
+    }
+
+    private void mapCurrent(Segment segment) throws IOException {
+        current = segment;
+        dataChannel = FileChannel.open(logPath(segment.first), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(indexPath(segment.first), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_SIZE);
+    }
+
+    private void rotate() throws IOException {
+        flushBuffer();
+        long closedFirst = current.first;
+        long next = current.first + current.count;
+        closeCurrent();
+        openSegment(next);
+        scheduleCompression(closedFirst);
+        while (segments.size() > maxSegments)
+            deleteSegment(segments.pollFirstEntry().getKey());
+    }
+
+    private void closeCurrent() {
+        try {
+            if (index != null)
+                index.force();
+            if (dataChannel != null)
+                dataChannel.close();
+            if (indexChannel != null)
+                indexChannel.close();
+        } catch (IOException e) {
+            logger.error("Could not close the console history segment of server " + serverName + ".", e);
+        } finally {
+            dataChannel = null;
+            indexChannel = null;
+            index = null;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        writeFully(writeBuffer);
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            dataChannel.write(buffer, dataChannel.size());
+    }
+
+    private void scheduleCompression(long first) {
+        try {
+            historyExecutor.execute(() -> compress(first));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipping the compression of a console history segment of server " + serverName + ".");
+        }
+    }
+
+    private void compress(long first) {
+        Path log = logPath(first);
+        Path compressed = compressedPath(first);
+        Path temporary = directory.resolve(compressed.getFileName() + ".tmp");
+        try {
+            synchronized (this) {
+                if (!segments.containsKey(first) || Files.notExists(log))
+                    return;
+            }
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+                Files.copy(log, output);
+            }
+            synchronized (this) {
+                if (!segments.containsKey(first)) {
+                    Files.deleteIfExists(temporary);
+                    return;
+                }
+                Files.move(temporary, compressed, StandardCopyOption.ATOMIC_MOVE);
+                Files.delete(log);
+            }
+        } catch (IOException e) {
+            logger.error("Could not compress console history segment " + log + ".", e);
+        }
+    }
+
+    private synchronized void deleteSegment(long first) {
+        try {
+            Files.deleteIfExists(logPath(first));
+            Files.deleteIfExists(compressedPath(first));
+            Files.deleteIfExists(indexPath(first));
+        } catch (IOException e) {
+            logger.error("Could not delete console history segment " + first + " of server " + serverName + ".", e);
+        }
+    }
+
+    private void readLines(Segment segment, long from, long to, List<String> lines) throws IOException {
+        // Entry n of the index is the end of line n of the segment, entry 0 is the line count. The entry before the
+        // first line is read for its start.
+        long firstEntry = from - segment.first;
+        long[] ends = new long[(int) (to - from + 1)];
+        ByteBuffer offsets = ByteBuffer.allocate((ends.length + 1) * Long.BYTES);
+        try (FileChannel channel = FileChannel.open(indexPath(segment.first), StandardOpenOption.READ)) {
+            while (offsets.hasRemaining()) {
+                if (channel.read(offsets, firstEntry * Long.BYTES + offsets.position()) < 0)
+                    throw new EOFException("The console history index of segment " + segment.first + " is too short.");
+            }
+        }
+        offsets.flip();
+        long start = offsets.getLong();
+        if (firstEntry == 0)
+            start = 0;
+        for (int i = 0; i < ends.length; i++)
+            ends[i] = offsets.getLong();
+        byte[] bytes;
+        try {
+            bytes = readBytes(segment.first, start, (int) (ends[ends.length - 1] - start));
+        } catch (NoSuchFileException e) {
+            // The segment was compressed while being read.
+            bytes = readBytes(segment.first, start, (int) (ends[ends.length - 1] - start));
+        }
+        int offset = 0;
+        for (long end: ends) {
+            int length = (int) (end - start) - offset;
+            lines.add(new String(bytes, offset, Math.max(0, length - 1), StandardCharsets.UTF_8));
+            offset += length;
+        }
+    }
+
+    private byte[] readBytes(long first, long start, int length) throws IOException {
+        Path compressed = compressedPath(first);
+        if (Files.exists(compressed)) {
+            try (InputStream input = new GZIPInputStream(Files.newInputStream(compressed))) {
+                input.skipNBytes(start);
+                return input.readNBytes(length);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(logPath(first), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0)
+                    break;
+            }
+            return buffer.array();
+        }
+    }
+
+    private Path logPath(long first) {
+        return directory.resolve(fileName(first) + LOG_EXTENSION);
+    }
+
+    private Path compressedPath(long first) {
+        return directory.resolve(fileName(first) + COMPRESSED_EXTENSION);
+    }
+
+    private Path indexPath(long first) {
+        return directory.resolve(fileName(first) + INDEX_EXTENSION);
+    }
+
+    private static String fileName(long first) {
+        return String.format("%020d", first);
+    }
+
+    private static class Segment {
+
+        private final long first;
+        private long count;
+
+        private Segment(long first, long count) {
+            this.first = first;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Shares one memory budget between the console caches of all servers. Once the caches use more than the limit, lines
+// are evicted from the largest caches first until the total is back at 90% of the limit. A limit of 0 disables it.
+public class ConsoleMemoryGovernor {
+
+    private final long limit;
+    private final long target;
+    private final AtomicLong used;
+    private final LongAdder evicted;
+    private final List<ConsoleCache> caches;
+
+    public ConsoleMemoryGovernor(long limit) {
+        this.limit = limit;
+        target = limit - limit / 10;
+        used = new AtomicLong();
+        evicted = new LongAdder();
+        caches = new CopyOnWriteArrayList<>();
+    }
+
+    public void register(ConsoleCache cache) {
+        caches.add(cache);
+    }
+
+    public void unregister(ConsoleCache cache) {
+        caches.remove(cache);
+        cache.evictTo(0);
+    }
+
+    public void add(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    // Must not be called while holding the lock of a cache, since it takes the locks of the caches it evicts from.
+    public void reclaim() {
+        if (limit <= 0 || used.get() <= limit)
+            return;
+        synchronized (this) {
+            while (used.get() > target) {
+                ConsoleCache largest = null;
+                long secondBytes = 0;
+                for (ConsoleCache cache: caches) {
+                    long cacheBytes = cache.getBytes();
+                    if (largest == null || cacheBytes > largest.getBytes()) {
+                        if (largest != null)
+                            secondBytes = Math.max(secondBytes, largest.getBytes());
+                        largest = cache;
+                    } else {
+                        secondBytes = Math.max(secondBytes, cacheBytes);
+                    }
+                }
+                if (largest == null)
+                    return;
+                // Bring the largest cache down to the next one, or less if that is enough to get under the target.
+                long excess = used.get() - target;
+                long released = largest.evictTo(Math.max(secondBytes, largest.getBytes() - excess));
+                if (released <= 0)
+                    released = largest.evictTo(largest.getBytes() - excess);
+                if (released <= 0)
+                    return;
+                evicted.add(released);
+            }
+        }
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+}
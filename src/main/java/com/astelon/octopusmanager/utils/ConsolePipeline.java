@@ -0,0 +1,224 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hands the lines of a console to its sinks through a bounded ring buffer. Producers are serialized and only write to
+// the ring, each sink drains it at its own pace in a task on the sink executor. With DROP_OLDEST, a sink that falls
+// a whole ring behind loses the overwritten lines, so the producer never waits. With BLOCK, the producer waits for the
+// slowest sink instead.
+public class ConsolePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolePipeline.class);
+
+    private final String serverName;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final AtomicReferenceArray<String> lines;
+    private final List<SinkConsumer> consumers;
+    private final Object producerLock;
+    private final LongAdder droppedLines;
+
+    // A slot may be overwritten once claimed is a ring ahead of it, published is what the sinks may read.
+    private volatile long claimed;
+    private volatile long published;
+    private volatile boolean producerWaiting;
+    private volatile boolean closed;
+
+    public ConsolePipeline(String serverName, int bufferSize, OverflowPolicy policy, Executor executor) {
+        this.serverName = serverName;
+        capacity = Math.max(16, bufferSize);
+        this.policy = policy == null ? OverflowPolicy.DROP_OLDEST : policy;
+        this.executor = executor;
+        lines = new AtomicReferenceArray<>(capacity);
+        consumers = new CopyOnWriteArrayList<>();
+        producerLock = new Object();
+        droppedLines = new LongAdder();
+    }
+
+    public void addSink(String name, ConsoleSink sink) {
+        SinkConsumer consumer = new SinkConsumer(name, sink);
+        consumer.cursor = published;
+        consumers.add(consumer);
+    }
+
+    // Lines are numbered from 1. Returns the sequence of the line.
+    public long publish(String line) {
+        long sequence;
+        synchronized (producerLock) {
+            sequence = claimed + 1;
+            if (policy == OverflowPolicy.BLOCK)
+                awaitCapacity(sequence);
+            claimed = sequence;
+            lines.set(index(sequence), line);
+            published = sequence;
+        }
+        for (SinkConsumer consumer: consumers)
+            consumer.wake();
+        return sequence;
+    }
+
+    public long getLastSequence() {
+        return published;
+    }
+
+    // The lines from `from` to `to` that are still in the ring. The oldest ones may have been overwritten already, then
+    // the result starts later than `from`.
+    public ConsoleLines getLines(long from, long to) {
+        long last = Math.min(to, published);
+        long first = Math.max(Math.max(1, from), claimed - capacity + 1);
+        if (first > last)
+            return new ConsoleLines(last + 1, last, List.of());
+        String[] copy = new String[(int) (last - first + 1)];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = lines.get(index(first + i));
+        // Slots may have been reused while copying.
+        int skipped = (int) Math.max(0, claimed - capacity + 1 - first);
+        if (skipped >= copy.length)
+            return new ConsoleLines(last + 1, last, List.of());
+        return new ConsoleLines(first + skipped, last, List.of(Arrays.copyOfRange(copy, skipped, copy.length)));
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    // Drains what every sink has left on the calling thread and closes the sinks.
+    public void close() {
+        closed = true;
+        synchronized (producerLock) {
+            producerLock.notifyAll();
+        }
+        for (SinkConsumer consumer: consumers)
+            consumer.close();
+    }
+
+    private void awaitCapacity(long sequence) {
+        boolean interrupted = false;
+        try {
+            while (!closed && sequence - minimumCursor() > capacity) {
+                producerWaiting = true;
+                try {
+                    producerLock.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            producerWaiting = false;
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private long minimumCursor() {
+        long minimum = published;
+        for (SinkConsumer consumer: consumers)
+            minimum = Math.min(minimum, consumer.cursor);
+        return minimum;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK
+    }
+
+    private class SinkConsumer implements Runnable {
+
+        private final String name;
+        private final ConsoleSink sink;
+        private final AtomicBoolean scheduled;
+
+        private volatile long cursor;
+        private boolean sinkClosed;
+
+        private SinkConsumer(String name, ConsoleSink sink) {
+            this.name = name;
+            this.sink = sink;
+            scheduled = new AtomicBoolean();
+        }
+
+        private void wake() {
+            if (closed || !scheduled.compareAndSet(false, true))
+                return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            // A line published after the last check but before scheduled was cleared would not wake the sink again.
+            do {
+                drain();
+                scheduled.set(false);
+            } while (cursor < published && !closed && scheduled.compareAndSet(false, true));
+        }
+
+        private synchronized void drain() {
+            if (sinkClosed)
+                return;
+            long next = cursor + 1;
+            long last = published;
+            while (next <= last) {
+                String line = lines.get(index(next));
+                long oldestValid = claimed - capacity + 1;
+                if (next < oldestValid) {
+                    skip(oldestValid - next);
+                    next = oldestValid;
+                    cursor = next - 1;
+                    continue;
+                }
+                try {
+                    sink.accept(next, line);
+                } catch (Exception e) {
+                    logger.error("The console sink " + name + " of server " + serverName + " could not handle a line.",
+                            e);
+                }
+                cursor = next++;
+                if (producerWaiting) {
+                    synchronized (producerLock) {
+                        producerLock.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void skip(long count) {
+            droppedLines.add(count);
+            try {
+                sink.skipped(count);
+            } catch (Exception e) {
+                logger.error("The console sink " + name + " of server " + serverName + " could not handle skipped " +
+                        "lines.", e);
+            }
+        }
+
+        private synchronized void close() {
+            drain();
+            sinkClosed = true;
+            try {
+                sink.close();
+            } catch (Exception e) {
+                logger.error("Could not close the console sink " + name + " of server " + serverName + ".", e);
+            }
+        }
+    }
+}
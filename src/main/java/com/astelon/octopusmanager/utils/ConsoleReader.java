@@ -0,0 +1,133 @@
+package com.astelon.octopusmanager.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// Reads process output in large chunks and splits it into lines at the byte level. Lines are decoded as UTF-8 with
+// a reused decoder, and lines longer than maxLineLength bytes are split into several lines. Only one thread may call
+// read at a time.
+public class ConsoleReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int maxLineLength;
+    private final byte[] chunk;
+    private final byte[] lineBuffer;
+    private final CharsetDecoder decoder;
+    private final CharBuffer decoded;
+    private final RateCounter bytesRead;
+    private final RateCounter linesRead;
+
+    private int lineLength;
+
+    public ConsoleReader(int maxLineLength) {
+        this.maxLineLength = Math.max(16, maxLineLength);
+        chunk = new byte[CHUNK_SIZE];
+        lineBuffer = new byte[this.maxLineLength];
+        decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // UTF-8 never decodes to more chars than it has bytes.
+        decoded = CharBuffer.allocate(this.maxLineLength);
+        bytesRead = new RateCounter();
+        linesRead = new RateCounter();
+    }
+
+    public void read(InputStream inputStream, Consumer<String> lineConsumer) throws IOException {
+        lineLength = 0;
+        try {
+            int length = inputStream.read(chunk);
+            while (length >= 0) {
+                bytesRead.add(length);
+                split(length, lineConsumer);
+                length = inputStream.read(chunk);
+            }
+        } finally {
+            if (lineLength > 0)
+                emit(lineBuffer, 0, lineLength, lineConsumer);
+            lineLength = 0;
+        }
+    }
+
+    public RateCounter getBytesRead() {
+        return bytesRead;
+    }
+
+    public RateCounter getLinesRead() {
+        return linesRead;
+    }
+
+    private void split(int length, Consumer<String> lineConsumer) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (chunk[i] != '\n')
+                continue;
+            if (lineLength == 0 && i - start <= maxLineLength) {
+                emit(chunk, start, i - start, lineConsumer);
+            } else {
+                append(start, i - start, lineConsumer);
+                emit(lineBuffer, 0, lineLength, lineConsumer);
+                lineLength = 0;
+            }
+            start = i + 1;
+        }
+        if (start < length)
+            append(start, length - start, lineConsumer);
+    }
+
+    private void append(int offset, int length, Consumer<String> lineConsumer) {
+        while (length > 0) {
+            if (lineLength == maxLineLength)
+                emitOverflow(lineConsumer);
+            int copied = Math.min(length, maxLineLength - lineLength);
+            System.arraycopy(chunk, offset, lineBuffer, lineLength, copied);
+            lineLength += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    // Emits a full line buffer without cutting a multibyte character in half. The incomplete character, if any,
+    // is kept as the beginning of the next line.
+    private void emitOverflow(Consumer<String> lineConsumer) {
+        int lead = lineLength - 1;
+        while (lead > 0 && (lineBuffer[lead] & 0xC0) == 0x80)
+            lead--;
+        int cut = lead + sequenceLength(lineBuffer[lead]) > lineLength ? lead : lineLength;
+        if (cut == 0)
+            cut = lineLength;
+        emit(lineBuffer, 0, cut, lineConsumer);
+        lineLength -= cut;
+        System.arraycopy(lineBuffer, cut, lineBuffer, 0, lineLength);
+    }
+
+    private void emit(byte[] bytes, int offset, int length, Consumer<String> lineConsumer) {
+        if (length > 0 && bytes[offset + length - 1] == '\r')
+            length--;
+        decoder.reset();
+        decoded.clear();
+        decoder.decode(ByteBuffer.wrap(bytes, offset, length), decoded, true);
+        decoder.flush(decoded);
+        decoded.flip();
+        linesRead.increment();
+        lineConsumer.accept(decoded.toString());
+    }
+
+    private static int sequenceLength(byte lead) {
+        if ((lead & 0x80) == 0)
+            return 1;
+        if ((lead & 0xE0) == 0xC0)
+            return 2;
+        if ((lead & 0xF0) == 0xE0)
+            return 3;
+        if ((lead & 0xF8) == 0xF0)
+            return 4;
+        return 1;
+    }
+}
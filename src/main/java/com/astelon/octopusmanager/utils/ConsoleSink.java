@@ -0,0 +1,14 @@
+package com.astelon.octopusmanager.utils;
+
+// Receives the lines of a console in sequence order, always from one thread at a time.
+public interface ConsoleSink {
+
+    void accept(long sequence, String line) throws Exception;
+
+    // Called before the next line when the sink fell so far behind that the given amount of lines was overwritten.
+    default void skipped(long count) throws Exception {
+    }
+
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,10 @@
+package com.astelon.octopusmanager.utils;
+
+// Beans implementing this interface add a sink to the console of every server.
+public interface ConsoleSinkFactory {
+
+    String getName();
+
+    // May return null to leave out the given server.
+    ConsoleSink createSink(String serverName) throws Exception;
+}
@@ -0,0 +1,223 @@
+package com.astelon.octopusmanager.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts, for every websocket session, the outbound frames that were accepted on the client outbound channel but not
+// yet handled, which includes writing them to the socket unless another thread is already writing to it. Every frame
+// gives its slot back once its handling ends, however it ends, or when the channel could not dispatch it. Once a
+// session has maxPendingFrames frames waiting, new console frames trigger the configured policy for that session only,
+// so a slow client cannot hold up the others.
+public class ConsoleSubscriberGuard implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final String LINE_COUNT_HEADER = "line-count";
+    public static final String SKIPPED_LINES_HEADER = "skipped-lines";
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleSubscriberGuard.class);
+    private static final String CONSOLE_DESTINATION = "/topic/console/";
+    private static final String WATCH_DESTINATION = "/topic/consoles/";
+    private static final String COMPACT_DESTINATION = "/topic/compact/";
+
+    private final int maxPendingFrames;
+    private final Policy policy;
+    private final ConcurrentHashMap<String, SessionState> sessions;
+
+    private final LongAdder droppedFrames;
+    private final LongAdder droppedLines;
+    private final LongAdder disconnectedSessions;
+
+    public ConsoleSubscriberGuard(int maxPendingFrames, Policy policy) {
+        this.maxPendingFrames = Math.max(1, maxPendingFrames);
+        this.policy = policy == null ? Policy.COLLAPSE : policy;
+        sessions = new ConcurrentHashMap<>();
+        droppedFrames = new LongAdder();
+        droppedLines = new LongAdder();
+        disconnectedSessions = new LongAdder();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SessionState state = getState(message);
+        if (state == null)
+            return message;
+        boolean console = isConsoleFrame(message);
+        if (console && state.pending.get() >= maxPendingFrames) {
+            if (policy == Policy.DISCONNECT)
+                disconnect(state);
+            int queued = state.queuedConsole.get();
+            if (policy == Policy.DISCONNECT || queued == 0) {
+                drop(state, message);
+                return null;
+            }
+            // The queued console frames are older than this one, so they are discarded once they reach a thread.
+            state.discard.set(queued);
+        }
+        state.pending.incrementAndGet();
+        if (console)
+            state.queuedConsole.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        SessionState state = getState(message);
+        if (state == null || !isConsoleFrame(message))
+            return message;
+        state.queuedConsole.decrementAndGet();
+        if (state.discard.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+            state.sent();
+            drop(state, message);
+            return null;
+        }
+        long skipped = state.skippedLines.getAndSet(0);
+        if (skipped == 0 || policy != Policy.COLLAPSE)
+            return message;
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setNativeHeader(SKIPPED_LINES_HEADER, Long.toString(skipped));
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    // The message is null when beforeHandle dropped it, its slot was given back then.
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        SessionState state = message == null ? null : getState(message);
+        if (state != null)
+            state.sent();
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (sent && ex == null)
+            return;
+        SessionState state = getState(message);
+        if (state == null)
+            return;
+        if (isConsoleFrame(message))
+            state.queuedConsole.decrementAndGet();
+        state.sent();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.put(session.getId(), new SessionState(session));
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    public long getDisconnectedSessions() {
+        return disconnectedSessions.sum();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private SessionState getState(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId == null ? null : sessions.get(sessionId);
+    }
+
+    private boolean isConsoleFrame(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE)
+            return false;
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null && (destination.startsWith(CONSOLE_DESTINATION) ||
+                destination.startsWith(WATCH_DESTINATION) || destination.startsWith(COMPACT_DESTINATION));
+    }
+
+    private int getLineCount(Message<?> message) {
+        String lineCount = NativeMessageHeaderAccessor.getFirstNativeHeader(LINE_COUNT_HEADER, message.getHeaders());
+        try {
+            return lineCount == null ? 1 : Integer.parseInt(lineCount);
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private void drop(SessionState state, Message<?> message) {
+        int lines = getLineCount(message);
+        droppedFrames.increment();
+        droppedLines.add(lines);
+        state.skippedLines.addAndGet(lines);
+    }
+
+    private void disconnect(SessionState state) {
+        if (!state.disconnecting.compareAndSet(false, true))
+            return;
+        disconnectedSessions.increment();
+        logger.info("Closing websocket session " + state.session.getId() + " because it fell too far behind.");
+        try {
+            state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            logger.warn("Could not close websocket session " + state.session.getId() + ".", e);
+        }
+    }
+
+    public enum Policy {
+        DROP_OLDEST,
+        COLLAPSE,
+        DISCONNECT
+    }
+
+    private static class SessionState {
+
+        private final WebSocketSession session;
+        private final AtomicInteger pending;
+        private final AtomicInteger queuedConsole;
+        private final AtomicInteger discard;
+        private final AtomicLong skippedLines;
+        private final AtomicBoolean disconnecting;
+
+        private SessionState(WebSocketSession session) {
+            this.session = session;
+            pending = new AtomicInteger();
+            queuedConsole = new AtomicInteger();
+            discard = new AtomicInteger();
+            skippedLines = new AtomicLong();
+            disconnecting = new AtomicBoolean();
+        }
+
+        private void sent() {
+            pending.updateAndGet(count -> Math.max(0, count - 1));
+        }
+    }
+}
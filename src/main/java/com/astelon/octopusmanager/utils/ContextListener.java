@@ -1,6 +1,12 @@
 package com.astelon.octopusmanager.utils;
 
+import com.astelon.octopusmanager.managers.BulkOperationManager;
 import com.astelon.octopusmanager.managers.ConsoleManager;
+import com.astelon.octopusmanager.managers.ConsoleWatchManager;
+import com.astelon.octopusmanager.managers.MetricsManager;
+import com.astelon.octopusmanager.managers.PriorityManager;
+import com.astelon.octopusmanager.managers.ReadinessManager;
+import com.astelon.octopusmanager.managers.ResourceManager;
 import com.astelon.octopusmanager.managers.ServerManager;
 import org.springframework.stereotype.Service;
 
@@ -12,15 +18,41 @@ public class ContextListener implements ServletContextListener {
 
     private final ServerManager serverManager;
     private final ConsoleManager consoleManager;
+    private final MetricsManager metricsManager;
+    private final ConsoleWatchManager consoleWatchManager;
+    private final BulkOperationManager bulkOperationManager;
+    private final ResourceManager resourceManager;
+    private final ReadinessManager readinessManager;
+    private final PriorityManager priorityManager;
 
-    public ContextListener(ServerManager serverManager, ConsoleManager consoleManager) {
+    public ContextListener(ServerManager serverManager, ConsoleManager consoleManager, MetricsManager metricsManager,
+                           ConsoleWatchManager consoleWatchManager, BulkOperationManager bulkOperationManager,
+                           ResourceManager resourceManager, ReadinessManager readinessManager,
+                           PriorityManager priorityManager) {
         this.serverManager = serverManager;
         this.consoleManager = consoleManager;
+        this.metricsManager = metricsManager;
+        this.consoleWatchManager = consoleWatchManager;
+        this.bulkOperationManager = bulkOperationManager;
+        this.resourceManager = resourceManager;
+        this.readinessManager = readinessManager;
+        this.priorityManager = priorityManager;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        priorityManager.applyToManager();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        metricsManager.shutdown();
+        resourceManager.shutdown();
+        bulkOperationManager.shutdown();
+        // Waits for the servers to exit, so their last lines still go through the consoles shut down after it.
         serverManager.shutdown();
+        readinessManager.shutdown();
         consoleManager.shutdown();
+        consoleWatchManager.shutdown();
     }
 }
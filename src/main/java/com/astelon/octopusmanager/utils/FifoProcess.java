@@ -0,0 +1,325 @@
+package com.astelon.octopusmanager.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// A server process whose console goes through two named pipes instead of the pipes of the JVM, so it survives the
+// manager and can be reattached by the next one. The process itself keeps both pipes open for reading and writing, so
+// it never sees the end of its input or a broken output while no manager is attached. Its output pipe is emptied into
+// the spool files by the drainer ProcessLauncher starts next to it, the manager reads those and the next one replays
+// what the process printed meanwhile. Reattached processes are not children of the manager, so their exit value is
+// unknown.
+public class FifoProcess extends Process {
+
+    public static final int UNKNOWN_EXIT_VALUE = -1;
+
+    private static final long READ_RETRY_MILLIS = 100;
+    private static final long POSITION_SAVE_MILLIS = 1000;
+
+    private final ProcessHandle handle;
+    private final Process spawned;
+    private final Path spool;
+    private final Path input;
+    private final CompletableFuture<Process> exit;
+
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    // spawned is null for a reattached process.
+    public FifoProcess(ProcessHandle handle, Process spawned, Path spool, Path input) {
+        this.handle = handle;
+        this.spawned = spawned;
+        this.spool = spool;
+        this.input = input;
+        CompletableFuture<?> exited = spawned == null ? handle.onExit() : spawned.onExit();
+        exit = exited.handle((result, e) -> this);
+    }
+
+    // Reads the spool files the drainer of the wrapper writes, from where the last reader stopped. A file is only done
+    // once the next one exists, and the output only ends with the done marker, or shortly after the process is gone if
+    // the drainer was killed along with it. If the reader fell so far behind that its file was already deleted, it
+    // continues with the oldest file that is left.
+    @Override
+    public synchronized InputStream getInputStream() {
+        if (inputStream == null) {
+            inputStream = new InputStream() {
+
+                private final Path positionFile = sibling(spool, ".position");
+                private final Path doneFile = sibling(spool, ".done");
+                private long index;
+                private long offset;
+                private FileChannel channel;
+                private long positionSaved;
+                private int exitedPasses;
+
+                {
+                    if (spawned == null)
+                        loadPosition();
+                }
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (len == 0)
+                        return 0;
+                    while (true) {
+                        boolean done = Files.exists(doneFile);
+                        boolean alive = handle.isAlive();
+                        boolean hasNext = Files.exists(chunk(index + 1));
+                        FileChannel current = open();
+                        if (current != null) {
+                            int count = current.read(ByteBuffer.wrap(b, off, len), offset);
+                            if (count > 0) {
+                                offset += count;
+                                savePosition(false);
+                                return count;
+                            }
+                            if (hasNext) {
+                                next(index + 1);
+                                continue;
+                            }
+                        } else {
+                            long oldest = oldestChunk();
+                            if (oldest > index) {
+                                next(oldest);
+                                continue;
+                            }
+                        }
+                        if (done || (!alive && exitedPasses++ > 0))
+                            return -1;
+                        try {
+                            Thread.sleep(READ_RETRY_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException();
+                        }
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    savePosition(true);
+                    if (channel != null)
+                        channel.close();
+                }
+
+                private FileChannel open() throws IOException {
+                    if (channel == null) {
+                        try {
+                            channel = FileChannel.open(chunk(index), StandardOpenOption.READ);
+                        } catch (NoSuchFileException e) {
+                            return null;
+                        }
+                    }
+                    return channel;
+                }
+
+                private void next(long nextIndex) throws IOException {
+                    if (channel != null)
+                        channel.close();
+                    channel = null;
+                    index = nextIndex;
+                    offset = 0;
+                    savePosition(true);
+                }
+
+                private long oldestChunk() throws IOException {
+                    try (Stream<Path> files = Files.list(spool.getParent())) {
+                        return files.map(file -> chunkIndex(file.getFileName().toString()))
+                                .filter(chunkIndex -> chunkIndex >= 0).min(Long::compare).orElse(-1L);
+                    }
+                }
+
+                private long chunkIndex(String name) {
+                    String prefix = spool.getFileName() + ".";
+                    if (!name.startsWith(prefix))
+                        return -1;
+                    try {
+                        return Long.parseLong(name.substring(prefix.length()));
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+
+                // Saved at most once per second while reading, a reattaching manager may repeat what was read since.
+                private void savePosition(boolean force) {
+                    long now = System.currentTimeMillis();
+                    if (!force && now - positionSaved < POSITION_SAVE_MILLIS)
+                        return;
+                    positionSaved = now;
+                    try {
+                        Files.writeString(positionFile, index + " " + offset);
+                    } catch (IOException e) {
+                        // The next manager replays the whole spool instead.
+                    }
+                }
+
+                private void loadPosition() {
+                    try {
+                        String[] position = Files.readString(positionFile).trim().split(" ");
+                        index = Long.parseLong(position[0]);
+                        offset = Long.parseLong(position[1]);
+                    } catch (IOException | RuntimeException e) {
+                        index = 0;
+                        offset = 0;
+                    }
+                }
+
+                private Path chunk(long chunkIndex) {
+                    return sibling(spool, "." + chunkIndex);
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    // Opened for reading and writing, which never blocks, even if the process is already gone.
+    @Override
+    public synchronized OutputStream getOutputStream() {
+        if (outputStream == null) {
+            outputStream = new OutputStream() {
+
+                private RandomAccessFile delegate;
+
+                @Override
+                public void write(int b) throws IOException {
+                    open().write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    open().write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (delegate != null)
+                        delegate.close();
+                }
+
+                private RandomAccessFile open() throws IOException {
+                    if (delegate == null)
+                        delegate = new RandomAccessFile(input.toFile(), "rw");
+                    return delegate;
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        if (spawned != null)
+            return spawned.waitFor();
+        try {
+            handle.onExit().get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        return UNKNOWN_EXIT_VALUE;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        if (spawned != null)
+            return spawned.waitFor(timeout, unit);
+        try {
+            handle.onExit().get(timeout, unit);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return !handle.isAlive();
+        }
+    }
+
+    @Override
+    public int exitValue() {
+        if (spawned != null)
+            return spawned.exitValue();
+        if (handle.isAlive())
+            throw new IllegalThreadStateException("The process has not exited.");
+        return UNKNOWN_EXIT_VALUE;
+    }
+
+    @Override
+    public void destroy() {
+        handle.destroy();
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        handle.destroyForcibly();
+        return this;
+    }
+
+    @Override
+    public boolean supportsNormalTermination() {
+        return handle.supportsNormalTermination();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return handle.isAlive();
+    }
+
+    @Override
+    public long pid() {
+        return handle.pid();
+    }
+
+    @Override
+    public ProcessHandle toHandle() {
+        return handle;
+    }
+
+    @Override
+    public CompletableFuture<Process> onExit() {
+        return exit;
+    }
+
+    public boolean isReattached() {
+        return spawned == null;
+    }
+
+    // Removes the spool files of the previous process before a new one is started.
+    public static void deleteSpool(Path spool) throws IOException {
+        if (!Files.isDirectory(spool.getParent()))
+            return;
+        String prefix = spool.getFileName() + ".";
+        List<Path> files;
+        try (Stream<Path> list = Files.list(spool.getParent())) {
+            files = list.filter(file -> file.getFileName().toString().startsWith(prefix)).collect(Collectors.toList());
+        }
+        for (Path file : files)
+            Files.deleteIfExists(file);
+    }
+
+    private static Path sibling(Path spool, String suffix) {
+        return spool.resolveSibling(spool.getFileName() + suffix);
+    }
+}
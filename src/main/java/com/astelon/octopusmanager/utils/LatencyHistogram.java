@@ -0,0 +1,54 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts durations in fixed buckets, the last bucket holds everything above the highest bound.
+public class LatencyHistogram {
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAdder count;
+    private volatile long last;
+
+    public LatencyHistogram(long... bounds) {
+        this.bounds = bounds.clone();
+        counts = new AtomicLongArray(bounds.length + 1);
+        total = new LongAdder();
+        count = new LongAdder();
+    }
+
+    public void record(long value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket])
+            bucket++;
+        counts.incrementAndGet(bucket);
+        total.add(value);
+        count.increment();
+        last = value;
+    }
+
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = counts.get(i);
+        return result;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getLast() {
+        return last;
+    }
+}
@@ -0,0 +1,120 @@
+package com.astelon.octopusmanager.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps the lines that match the regex, if any, and whose log level is at least the minimum level, if any. The level
+// is the first level name found in the line, lines without one count as INFO. The regex comes from a user and runs on
+// the shared sink threads, so matching a line gives up after a bounded number of steps and the line is left out.
+public class LineFilter {
+
+    public static final int MAX_PATTERN_LENGTH = 256;
+
+    private static final Logger logger = LoggerFactory.getLogger(LineFilter.class);
+    private static final Pattern LEVEL_PATTERN =
+            Pattern.compile("\\b(TRACE|DEBUG|INFO|WARN|WARNING|ERROR|SEVERE|FATAL)\\b");
+    private static final long MAX_STEPS_PER_CHAR = 100;
+    private static final long MIN_STEPS = 100000;
+
+    private final Pattern pattern;
+    private final Level minimumLevel;
+    private final AtomicBoolean slowReported;
+
+    public LineFilter(Pattern pattern, Level minimumLevel) {
+        this.pattern = pattern;
+        this.minimumLevel = minimumLevel;
+        slowReported = new AtomicBoolean();
+    }
+
+    public boolean matches(String line) {
+        if (minimumLevel != null && minimumLevel != Level.TRACE && getLevel(line).compareTo(minimumLevel) < 0)
+            return false;
+        if (pattern == null)
+            return true;
+        try {
+            return pattern.matcher(new BoundedCharSequence(line, MIN_STEPS + MAX_STEPS_PER_CHAR * line.length()))
+                    .find();
+        } catch (StepLimitException e) {
+            if (slowReported.compareAndSet(false, true))
+                logger.warn("The filter " + pattern.pattern() + " is too slow, the lines it takes too long on are " +
+                        "left out.");
+            return false;
+        }
+    }
+
+    public static Level parseLevel(String level) {
+        return toLevel(level.toUpperCase(Locale.ROOT));
+    }
+
+    private static Level getLevel(String line) {
+        Matcher matcher = LEVEL_PATTERN.matcher(line);
+        return matcher.find() ? toLevel(matcher.group(1)) : Level.INFO;
+    }
+
+    private static Level toLevel(String name) {
+        switch (name) {
+            case "WARNING":
+                return Level.WARN;
+            case "SEVERE":
+            case "FATAL":
+                return Level.ERROR;
+            default:
+                return Level.valueOf(name);
+        }
+    }
+
+    // Counts how often the regex engine looks at a character, which bounds the backtracking of a bad pattern.
+    private static class BoundedCharSequence implements CharSequence {
+
+        private final String text;
+        private final long maxSteps;
+        private long steps;
+
+        private BoundedCharSequence(String text, long maxSteps) {
+            this.text = text;
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps > maxSteps)
+                throw new StepLimitException();
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static class StepLimitException extends RuntimeException {
+
+        private StepLimitException() {
+            super(null, null, false, false);
+        }
+    }
+
+    public enum Level {
+        TRACE,
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+}
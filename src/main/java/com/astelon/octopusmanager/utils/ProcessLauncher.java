@@ -0,0 +1,152 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.RuntimeEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Starts the server processes. With reattaching enabled a process is started through a shell that connects its
+// console to two named pipes in runtimeDirectory/{server} and then runs the server command in its place, in a session
+// of its own so it outlives the manager. Next to it the shell starts a drainer that empties the output pipe into the
+// spool files, so the server never blocks on its output while no manager is attached. Every such process is written
+// to the runtime journal, which the next manager uses to reattach to the processes that are still running.
+public class ProcessLauncher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessLauncher.class);
+    // The drainer copies each read of the output pipe with dd, so nothing is held back in a buffer, and appends it to
+    // spool.0, spool.1 and so on. It starts the next file once one holds SPOOL_CHUNK bytes and deletes the one before
+    // the last, so the spool never takes more than two chunks. It marks the end of the output with spool.done.
+    private static final String WRAPPER = String.join("\n",
+            "output=\"$1\" input=\"$2\" spool=\"$3\" chunk=\"$4\"; shift 4",
+            "exec 3<>\"$output\" 4<>\"$input\"",
+            "(n=0 size=0; while dd bs=65536 count=1 2>/dev/null >> \"$spool.$n\" && new=$(wc -c < \"$spool.$n\") &&",
+            "[ \"$new\" -gt \"$size\" ]; do size=$new; if [ \"$size\" -ge \"$chunk\" ]; then n=$((n + 1)) size=0;",
+            "rm -f \"$spool.$((n - 2))\"; fi; done; : > \"$spool.done\") <\"$output\" 3>&- 4>&- &",
+            "exec \"$@\" <&4 >&3 2>&3");
+    private static final long SPOOL_CHUNK = 8 * 1024 * 1024;
+    private static final List<Path> SETSID_PATHS = List.of(Path.of("/usr/bin/setsid"), Path.of("/bin/setsid"));
+    private static final long MKFIFO_TIMEOUT_SECONDS = 10;
+
+    private final boolean reattachEnabled;
+    private final Path runtimeDirectory;
+    private final RuntimeJournal journal;
+    private final String setsid;
+
+    public ProcessLauncher(boolean reattachEnabled, Path runtimeDirectory, Path journalFile) {
+        boolean supported = Files.isExecutable(Path.of("/bin/sh"));
+        if (reattachEnabled && !supported)
+            logger.warn("Reattaching to processes needs /bin/sh and named pipes, it is disabled on this system.");
+        this.reattachEnabled = reattachEnabled && supported;
+        this.runtimeDirectory = runtimeDirectory;
+        journal = this.reattachEnabled ? new RuntimeJournal(journalFile) : null;
+        setsid = SETSID_PATHS.stream().filter(Files::isExecutable).findFirst().map(Path::toString).orElse(null);
+    }
+
+    public boolean isReattachEnabled() {
+        return reattachEnabled;
+    }
+
+    // The command runs through the wrapper commands, if any. Only the command itself is journaled.
+    public Process start(String serverName, List<String> wrapper, List<String> command, File workingDirectory)
+            throws IOException {
+        List<String> launched = new ArrayList<>(wrapper);
+        launched.addAll(command);
+        if (!reattachEnabled)
+            return new ProcessBuilder(launched).redirectErrorStream(true).directory(workingDirectory).start();
+        Path directory = runtimeDirectory.resolve(serverName);
+        Path output = createFifo(directory.resolve("output"));
+        Path input = createFifo(directory.resolve("input"));
+        Path spool = directory.resolve("spool");
+        FifoProcess.deleteSpool(spool);
+        List<String> wrapped = new ArrayList<>();
+        if (setsid != null)
+            wrapped.add(setsid);
+        wrapped.addAll(List.of("/bin/sh", "-c", WRAPPER, "sh", output.toString(), input.toString(),
+                spool.toString(), Long.toString(SPOOL_CHUNK)));
+        wrapped.addAll(launched);
+        Process spawned = new ProcessBuilder(wrapped).directory(workingDirectory)
+                .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectErrorStream(true).start();
+        ProcessHandle handle = spawned.toHandle();
+        RuntimeEntry entry = new RuntimeEntry();
+        entry.setPid(handle.pid());
+        entry.setStartTime(getStartTime(handle));
+        entry.setCommand(List.copyOf(command));
+        entry.setWorkingDirectory(workingDirectory.getAbsolutePath());
+        journal.put(serverName, entry);
+        return new FifoProcess(handle, spawned, spool, input);
+    }
+
+    // Returns the process the previous manager left running for the server, or null. The process must still have the
+    // start time in the journal, otherwise the pid was reused by another process.
+    public Process reattach(String serverName, List<String> command, File workingDirectory) {
+        if (!reattachEnabled)
+            return null;
+        RuntimeEntry entry = journal.get(serverName);
+        if (entry == null)
+            return null;
+        Optional<ProcessHandle> handle = ProcessHandle.of(entry.getPid());
+        if (handle.isEmpty() || !handle.get().isAlive() || getStartTime(handle.get()) != entry.getStartTime()) {
+            journal.remove(serverName, entry.getPid());
+            return null;
+        }
+        if (!command.equals(entry.getCommand()) ||
+                !workingDirectory.getAbsolutePath().equals(entry.getWorkingDirectory()))
+            logger.warn("Server " + serverName + " was changed while process " + entry.getPid() + " kept running, " +
+                    "it is reattached anyway and runs with the new settings after its next start.");
+        Path directory = runtimeDirectory.resolve(serverName);
+        Path output = directory.resolve("output");
+        Path input = directory.resolve("input");
+        if (!isFifo(output) || !isFifo(input)) {
+            logger.warn("The console pipes of server " + serverName + " are gone, process " + entry.getPid() +
+                    " cannot be reattached.");
+            journal.remove(serverName, entry.getPid());
+            return null;
+        }
+        return new FifoProcess(handle.get(), null, directory.resolve("spool"), input);
+    }
+
+    public void exited(String serverName, Process process) {
+        if (journal != null)
+            journal.remove(serverName, process.pid());
+    }
+
+    private static long getStartTime(ProcessHandle handle) {
+        return handle.info().startInstant().map(Instant::toEpochMilli).orElse(0L);
+    }
+
+    private static Path createFifo(Path path) throws IOException {
+        if (isFifo(path))
+            return path;
+        Files.createDirectories(path.getParent());
+        Files.deleteIfExists(path);
+        Process mkfifo = new ProcessBuilder("mkfifo", "-m", "600", path.toString()).redirectErrorStream(true).start();
+        try {
+            if (!mkfifo.waitFor(MKFIFO_TIMEOUT_SECONDS, TimeUnit.SECONDS) || mkfifo.exitValue() != 0)
+                throw new IOException("Could not create the named pipe " + path + ".");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating the named pipe " + path + ".", e);
+        }
+        return path;
+    }
+
+    private static boolean isFifo(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isOther();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
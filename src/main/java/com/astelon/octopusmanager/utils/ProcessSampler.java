@@ -0,0 +1,108 @@
+package com.astelon.octopusmanager.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Adds up the resource usage of a process tree. CPU time comes from ProcessHandle, the rest from /proc/<pid>, so on
+// systems without /proc only the CPU time is known. Reused by the sampler thread, call reset() before every tree.
+public class ProcessSampler {
+
+    private static final Path PROC = Path.of("/proc");
+
+    private final boolean procAvailable;
+
+    private long cpuNanos;
+    private long rssBytes;
+    private int threads;
+    private int fileDescriptors;
+    private long readBytes;
+    private long writeBytes;
+
+    public ProcessSampler() {
+        procAvailable = Files.isDirectory(PROC);
+    }
+
+    public boolean isProcAvailable() {
+        return procAvailable;
+    }
+
+    public void reset() {
+        cpuNanos = 0;
+        rssBytes = 0;
+        threads = 0;
+        fileDescriptors = 0;
+        readBytes = 0;
+        writeBytes = 0;
+    }
+
+    // Processes that exit while they are read are skipped.
+    public void add(ProcessHandle handle) {
+        cpuNanos += handle.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+        if (!procAvailable)
+            return;
+        Path directory = PROC.resolve(Long.toString(handle.pid()));
+        try {
+            for (String line: Files.readAllLines(directory.resolve("status"))) {
+                if (line.startsWith("VmRSS:"))
+                    rssBytes += parseValue(line) * 1024;
+                else if (line.startsWith("Threads:"))
+                    threads += (int) parseValue(line);
+            }
+            try (Stream<Path> fds = Files.list(directory.resolve("fd"))) {
+                fileDescriptors += (int) fds.count();
+            }
+        } catch (IOException | RuntimeException e) {
+            return;
+        }
+        // Only readable by the owner of the process, or with extra privileges.
+        try {
+            List<String> lines = Files.readAllLines(directory.resolve("io"));
+            for (String line: lines) {
+                if (line.startsWith("read_bytes:"))
+                    readBytes += parseValue(line);
+                else if (line.startsWith("write_bytes:"))
+                    writeBytes += parseValue(line);
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getRssBytes() {
+        return rssBytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getFileDescriptors() {
+        return fileDescriptors;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public long getWriteBytes() {
+        return writeBytes;
+    }
+
+    // Parses lines such as "VmRSS:	  123456 kB".
+    private static long parseValue(String line) {
+        int start = line.indexOf(':') + 1;
+        while (start < line.length() && Character.isWhitespace(line.charAt(start)))
+            start++;
+        int end = start;
+        while (end < line.length() && Character.isDigit(line.charAt(end)))
+            end++;
+        return end == start ? 0 : Long.parseLong(line.substring(start, end));
+    }
+}
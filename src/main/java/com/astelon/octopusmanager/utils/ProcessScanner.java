@@ -0,0 +1,67 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Finds new descendants for every tracked process tree with a single pass over the process table per interval, on a
+// thread of its own, so the scans never hold up the handling of exits and restarts. The children of descendants that
+// were reparented are found as well.
+public class ProcessScanner {
+
+    private final Set<ProcessTree> trees;
+    private final ScheduledExecutorService scanScheduler;
+
+    // An interval of 0 disables scanning, then descendants are only looked up when a tree is signalled.
+    public ProcessScanner(long interval) {
+        trees = ConcurrentHashMap.newKeySet();
+        if (interval > 0) {
+            scanScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Process Scan Thread");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scanScheduler.scheduleWithFixedDelay(this::scan, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            scanScheduler = null;
+        }
+    }
+
+    public ProcessTree track(ProcessHandle root) {
+        ProcessTree tree = new ProcessTree(root);
+        trees.add(tree);
+        return tree;
+    }
+
+    public void shutdown() {
+        if (scanScheduler != null)
+            scanScheduler.shutdownNow();
+    }
+
+    private void scan() {
+        trees.removeIf(ProcessTree::isClosed);
+        if (trees.isEmpty())
+            return;
+        Map<Long, List<ProcessHandle>> children = new HashMap<>();
+        ProcessHandle.allProcesses().forEach(handle -> handle.parent().ifPresent(parent ->
+                children.computeIfAbsent(parent.pid(), key -> new ArrayList<>()).add(handle)));
+        for (ProcessTree tree: trees) {
+            List<ProcessHandle> found = new ArrayList<>();
+            ArrayDeque<ProcessHandle> queue = new ArrayDeque<>(tree.getAlive());
+            while (!queue.isEmpty()) {
+                for (ProcessHandle child: children.getOrDefault(queue.poll().pid(), List.of())) {
+                    found.add(child);
+                    queue.add(child);
+                }
+            }
+            tree.addDescendants(found);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.astelon.octopusmanager.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Stops whole process trees in stages: SIGTERM to every process, SIGKILL to the ones still running after the term
+// timeout, then waiting up to the kill timeout for them to be reaped. The futures complete with the processes that
+// survived all of it, so an empty list means the whole tree is gone.
+public class ProcessTerminator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessTerminator.class);
+
+    private final long termTimeout;
+    private final long killTimeout;
+    private final ProcessScanner scanner;
+    private final ScheduledExecutorService scheduler;
+
+    public ProcessTerminator(long termTimeout, long killTimeout, ProcessScanner scanner,
+                             ScheduledExecutorService scheduler) {
+        this.termTimeout = Math.max(0, termTimeout);
+        this.killTimeout = Math.max(0, killTimeout);
+        this.scanner = scanner;
+        this.scheduler = scheduler;
+    }
+
+    // The scanner looks for new descendants until the tree is closed.
+    public ProcessTree track(ProcessHandle root) {
+        return scanner.track(root);
+    }
+
+    public CompletableFuture<List<ProcessHandle>> terminate(ProcessTree tree) {
+        tree.signal(false);
+        return awaitExit(tree, termTimeout).thenCompose(alive -> alive.isEmpty() ?
+                CompletableFuture.completedFuture(alive) : kill(tree));
+    }
+
+    public CompletableFuture<List<ProcessHandle>> kill(ProcessTree tree) {
+        tree.signal(true);
+        return awaitExit(tree, killTimeout);
+    }
+
+    // Completes once every process of the tree is reaped or at the timeout, whichever comes first.
+    private CompletableFuture<List<ProcessHandle>> awaitExit(ProcessTree tree, long timeout) {
+        List<ProcessHandle> alive = tree.getAlive();
+        if (alive.isEmpty())
+            return CompletableFuture.completedFuture(alive);
+        CompletableFuture<List<ProcessHandle>> result = new CompletableFuture<>();
+        CompletableFuture.allOf(alive.stream().map(ProcessHandle::onExit).toArray(CompletableFuture<?>[]::new))
+                .whenComplete((ignored, e) -> result.complete(tree.getAlive()));
+        try {
+            ScheduledFuture<?> timer = scheduler.schedule(() -> result.complete(tree.getAlive()), timeout,
+                    TimeUnit.MILLISECONDS);
+            result.whenComplete((ignored, e) -> timer.cancel(false));
+        } catch (RejectedExecutionException e) {
+            logger.debug("The scheduler is shut down, waiting for the processes without a timeout.");
+        }
+        return result;
+    }
+}
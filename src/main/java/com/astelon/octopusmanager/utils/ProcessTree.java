@@ -0,0 +1,74 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// The process of a server and every descendant of it seen so far. Descendants are remembered because once their
+// parent exits they are reparented and can no longer be found from the root, and a wrapper script that exits must not
+// leave the real server running. Handles compare the start time as well, so a reused pid is never signalled.
+public class ProcessTree {
+
+    private final ProcessHandle root;
+    // In the order they were found, so parents come before their children.
+    private final Map<Long, ProcessHandle> descendants;
+    private volatile boolean closed;
+
+    public ProcessTree(ProcessHandle root) {
+        this.root = root;
+        descendants = new LinkedHashMap<>();
+    }
+
+    public ProcessHandle getRoot() {
+        return root;
+    }
+
+    // Looks up the current descendants of the root right away.
+    public void refresh() {
+        if (root.isAlive())
+            addDescendants(root.descendants().collect(Collectors.toList()));
+    }
+
+    public synchronized void addDescendants(Collection<ProcessHandle> found) {
+        descendants.values().removeIf(handle -> !handle.isAlive());
+        for (ProcessHandle handle: found) {
+            if (handle.pid() != root.pid())
+                descendants.putIfAbsent(handle.pid(), handle);
+        }
+    }
+
+    // The root and the descendants that have not been reaped yet, parents first.
+    public synchronized List<ProcessHandle> getAlive() {
+        List<ProcessHandle> alive = new ArrayList<>(descendants.size() + 1);
+        if (root.isAlive())
+            alive.add(root);
+        for (ProcessHandle handle: descendants.values()) {
+            if (handle.isAlive())
+                alive.add(handle);
+        }
+        return alive;
+    }
+
+    // Parents get the signal first, so a wrapper can still pass it on the way it expects.
+    public void signal(boolean forcibly) {
+        refresh();
+        for (ProcessHandle handle: getAlive()) {
+            if (forcibly)
+                handle.destroyForcibly();
+            else
+                handle.destroy();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Stops the scanner from looking for more descendants.
+    public void close() {
+        closed = true;
+    }
+}
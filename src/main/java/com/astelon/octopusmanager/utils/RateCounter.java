@@ -0,0 +1,45 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RateCounter {
+
+    private static final long MIN_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder total;
+
+    private long lastSampleTime;
+    private long lastSampleTotal;
+    private double rate;
+
+    public RateCounter() {
+        total = new LongAdder();
+        lastSampleTime = System.nanoTime();
+    }
+
+    public void add(long amount) {
+        total.add(amount);
+    }
+
+    public void increment() {
+        total.increment();
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    // The rate is recomputed at most once per second, from the growth of the total since the previous sample.
+    public synchronized double getRatePerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - lastSampleTime;
+        if (elapsed >= MIN_SAMPLE_INTERVAL) {
+            long currentTotal = total.sum();
+            rate = (currentTotal - lastSampleTotal) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            lastSampleTime = now;
+            lastSampleTotal = currentTotal;
+        }
+        return rate;
+    }
+}
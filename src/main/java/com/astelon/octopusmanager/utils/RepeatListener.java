@@ -0,0 +1,6 @@
+package com.astelon.octopusmanager.utils;
+
+public interface RepeatListener {
+
+    void repeated(long sequence, String line, long repeats, boolean finished);
+}
@@ -0,0 +1,86 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ResourceSamples;
+
+// The last `capacity` resource samples of a server, one primitive array per metric. Samples are numbered from 1 like
+// console lines, so clients can ask for the ones after the last sample they have.
+public class ResourceHistory {
+
+    private final int capacity;
+    private final long[] times;
+    private final float[] cpu;
+    private final long[] rss;
+    private final int[] threads;
+    private final int[] fileDescriptors;
+    private final long[] readBytes;
+    private final long[] writeBytes;
+
+    private long lastSequence;
+    private long lastPid;
+    private long lastTime;
+    private long lastCpuNanos;
+    private long lastReadBytes;
+    private long lastWriteBytes;
+
+    public ResourceHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        times = new long[this.capacity];
+        cpu = new float[this.capacity];
+        rss = new long[this.capacity];
+        threads = new int[this.capacity];
+        fileDescriptors = new int[this.capacity];
+        readBytes = new long[this.capacity];
+        writeBytes = new long[this.capacity];
+    }
+
+    // Takes the totals of the process tree. The first sample of a new process has no CPU or I/O, since there is
+    // nothing to compare it with.
+    public synchronized void add(long pid, long time, long nanoTime, ProcessSampler sampler) {
+        int index = (int) (lastSequence % capacity);
+        boolean sameProcess = pid == lastPid && lastSequence > 0;
+        long elapsed = nanoTime - lastTime;
+        times[index] = time;
+        cpu[index] = sameProcess && elapsed > 0 ?
+                Math.max(0, sampler.getCpuNanos() - lastCpuNanos) * 100f / elapsed : 0;
+        rss[index] = sampler.getRssBytes();
+        threads[index] = sampler.getThreads();
+        fileDescriptors[index] = sampler.getFileDescriptors();
+        // Totals drop when a child process exits, those samples count as 0.
+        readBytes[index] = sameProcess ? Math.max(0, sampler.getReadBytes() - lastReadBytes) : 0;
+        writeBytes[index] = sameProcess ? Math.max(0, sampler.getWriteBytes() - lastWriteBytes) : 0;
+        lastSequence++;
+        lastPid = pid;
+        lastTime = nanoTime;
+        lastCpuNanos = sampler.getCpuNanos();
+        lastReadBytes = sampler.getReadBytes();
+        lastWriteBytes = sampler.getWriteBytes();
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized ResourceSamples getSamplesAfter(String server, long sequence) {
+        long first = Math.max(Math.max(0, sequence), lastSequence - capacity) + 1;
+        int count = (int) Math.max(0, lastSequence - first + 1);
+        long[] sampleTimes = new long[count];
+        float[] sampleCpu = new float[count];
+        long[] sampleRss = new long[count];
+        int[] sampleThreads = new int[count];
+        int[] sampleFileDescriptors = new int[count];
+        long[] sampleReadBytes = new long[count];
+        long[] sampleWriteBytes = new long[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((first - 1 + i) % capacity);
+            sampleTimes[i] = times[index];
+            sampleCpu[i] = cpu[index];
+            sampleRss[i] = rss[index];
+            sampleThreads[i] = threads[index];
+            sampleFileDescriptors[i] = fileDescriptors[index];
+            sampleReadBytes[i] = readBytes[index];
+            sampleWriteBytes[i] = writeBytes[index];
+        }
+        return new ResourceSamples(server, first, sampleTimes, sampleCpu, sampleRss, sampleThreads,
+                sampleFileDescriptors, sampleReadBytes, sampleWriteBytes);
+    }
+}
@@ -0,0 +1,29 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Delay before the n-th automatic restart in a row: the initial delay multiplied by `multiplier` for every earlier
+// attempt, capped at maxDelay, then moved up or down by a random fraction of at most `jitter` so servers that crashed
+// together don't all restart at the same moment.
+public class RestartBackoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final double jitter;
+
+    public RestartBackoff(long initialDelay, long maxDelay, double multiplier, double jitter) {
+        this.initialDelay = Math.max(0, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.multiplier = Math.max(1, multiplier);
+        this.jitter = Math.min(1, Math.max(0, jitter));
+    }
+
+    public long getDelay(int attempt) {
+        double delay = initialDelay * Math.pow(multiplier, Math.max(0, attempt - 1));
+        delay = Math.min(delay, maxDelay);
+        if (jitter > 0)
+            delay *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Math.round(Math.min(delay, maxDelay));
+    }
+}
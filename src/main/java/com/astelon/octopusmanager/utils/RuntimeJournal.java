@@ -0,0 +1,96 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.RuntimeEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.nodes.Tag;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// The processes the manager is running, kept in a file so they can be found again after the manager restarts. Every
+// change rewrites the file through a temporary one, so a crash leaves either the old or the new journal.
+public class RuntimeJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuntimeJournal.class);
+
+    private final Path file;
+    private final Map<String, RuntimeEntry> entries;
+
+    public RuntimeJournal(Path file) {
+        this.file = file;
+        entries = load(file);
+    }
+
+    public synchronized RuntimeEntry get(String serverName) {
+        return entries.get(serverName);
+    }
+
+    public synchronized void put(String serverName, RuntimeEntry entry) {
+        entries.put(serverName, entry);
+        save();
+    }
+
+    // Only removes the entry of the given process, a newer process of the server may already have replaced it.
+    public synchronized void remove(String serverName, long pid) {
+        RuntimeEntry entry = entries.get(serverName);
+        if (entry == null || entry.getPid() != pid)
+            return;
+        entries.remove(serverName);
+        save();
+    }
+
+    private void save() {
+        Template template = new Template();
+        template.setServers(new HashMap<>(entries));
+        String output = new Yaml().dumpAs(template, Tag.MAP, DumperOptions.FlowStyle.BLOCK);
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(output);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Could not save the runtime journal.", e);
+        }
+    }
+
+    private static Map<String, RuntimeEntry> load(Path file) {
+        Map<String, RuntimeEntry> result = new HashMap<>();
+        if (!Files.exists(file))
+            return result;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Template template = new Yaml().loadAs(reader, Template.class);
+            if (template != null && template.getServers() != null)
+                result.putAll(template.getServers());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not read the runtime journal, running processes will not be reattached.", e);
+        }
+        return result;
+    }
+
+    public static class Template {
+
+        private Map<String, RuntimeEntry> servers;
+
+        public Map<String, RuntimeEntry> getServers() {
+            return servers;
+        }
+
+        public void setServers(Map<String, RuntimeEntry> servers) {
+            this.servers = servers;
+        }
+    }
+}
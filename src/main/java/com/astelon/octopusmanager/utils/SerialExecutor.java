@@ -0,0 +1,48 @@
+package com.astelon.octopusmanager.utils;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+// Runs tasks one at a time, in submission order, on an executor that may be shared with other SerialExecutors.
+public class SerialExecutor implements Executor {
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks;
+
+    private Runnable active;
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+        tasks = new ArrayDeque<>();
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null)
+            scheduleNext();
+    }
+
+    public synchronized void clear() {
+        tasks.clear();
+    }
+
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            try {
+                executor.execute(active);
+            } catch (RuntimeException e) {
+                active = null;
+                tasks.clear();
+                throw e;
+            }
+        }
+    }
+}
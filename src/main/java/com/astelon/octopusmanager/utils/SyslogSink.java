@@ -0,0 +1,46 @@
+package com.astelon.octopusmanager.utils;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Sends every line as a BSD syslog message (facility user, severity info) over UDP, tagged with the server name.
+public class SyslogSink implements ConsoleSink {
+
+    private static final int PRIORITY = 14;
+    private static final int MAX_MESSAGE_SIZE = 2048;
+
+    private final byte[] prefix;
+    private final InetSocketAddress address;
+    private final DatagramSocket socket;
+
+    public SyslogSink(String serverName, String host, int port) throws IOException {
+        String tag = "octopusmanager-" + serverName.replaceAll("[^A-Za-z0-9_.-]", "_");
+        prefix = ("<" + PRIORITY + ">" + tag + ": ").getBytes(StandardCharsets.UTF_8);
+        address = new InetSocketAddress(InetAddress.getByName(host), port);
+        socket = new DatagramSocket();
+    }
+
+    @Override
+    public void accept(long sequence, String line) throws IOException {
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(text.length, MAX_MESSAGE_SIZE - prefix.length);
+        byte[] message = new byte[prefix.length + length];
+        System.arraycopy(prefix, 0, message, 0, prefix.length);
+        System.arraycopy(text, 0, message, prefix.length, length);
+        socket.send(new DatagramPacket(message, message.length, address));
+    }
+
+    @Override
+    public void skipped(long count) throws IOException {
+        accept(0, "[OctopusManager] " + count + " lines were skipped because syslog fell behind.");
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+}
@@ -0,0 +1,200 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleTrigger;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Literal patterns are compiled into a single Aho-Corasick automaton, stored as a full transition table over the
+// characters that appear in the patterns, so a line is scanned once whatever the number of literal triggers. Regex
+// patterns are joined into one alternation with a capture group around every regex, so one scan of the line finds the
+// positions where a regex matches and the group tells which one. The alternation only reports its first regex that
+// matches at a position, so the later ones are only tried there, anchored. Joining renumbers capture groups and would
+// clash on repeated group names, so regexes with backreferences or named groups stay out of the alternation and always
+// run on their own. An engine is only used by the read thread of its console, so it keeps no thread-safe state.
+public class TriggerEngine {
+
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)|\\(\\?<[A-Za-z]");
+
+    private final List<ConsoleTrigger> triggers;
+
+    private final char[] alphabet;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private final Matcher combinedRegex;
+    private final int[] regexTriggers;
+    private final Matcher[] regexes;
+    // Whether the regex is part of the combined alternation, and then the group around it.
+    private final boolean[] combined;
+    private final int[] groups;
+    private final int combinedCount;
+
+    private final long[] firedAt;
+    private long lineCount;
+
+    public TriggerEngine(List<ConsoleTrigger> triggers) {
+        this.triggers = List.copyOf(triggers);
+        firedAt = new long[this.triggers.size()];
+        Arrays.fill(firedAt, -1);
+        List<Integer> literals = new ArrayList<>();
+        List<Integer> regexIndices = new ArrayList<>();
+        for (int i = 0; i < this.triggers.size(); i++) {
+            ConsoleTrigger trigger = this.triggers.get(i);
+            if (trigger.isRegex())
+                regexIndices.add(i);
+            else if (trigger.getPattern() != null && !trigger.getPattern().isEmpty())
+                literals.add(i);
+        }
+        alphabet = buildAlphabet(literals);
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> outputLists = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputLists.add(new ArrayList<>());
+        for (int index: literals) {
+            String pattern = this.triggers.get(index).getPattern();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbol(pattern.charAt(i));
+                if (gotoTable.get(state)[symbol] <= 0) {
+                    gotoTable.get(state)[symbol] = gotoTable.size();
+                    gotoTable.add(newRow());
+                    outputLists.add(new ArrayList<>());
+                }
+                state = gotoTable.get(state)[symbol];
+            }
+            outputLists.get(state).add(index);
+        }
+        int states = gotoTable.size();
+        int width = alphabet.length;
+        transitions = new int[states * width];
+        int[] failure = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < width; symbol++) {
+            int next = gotoTable.get(0)[symbol];
+            transitions[symbol] = Math.max(0, next);
+            if (next > 0)
+                queue.add(next);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputLists.get(state).addAll(outputLists.get(failure[state]));
+            for (int symbol = 0; symbol < width; symbol++) {
+                int next = gotoTable.get(state)[symbol];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * width + symbol];
+                    transitions[state * width + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * width + symbol] = transitions[failure[state] * width + symbol];
+                }
+            }
+        }
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++)
+            outputs[state] = outputLists.get(state).stream().distinct().mapToInt(Integer::intValue).toArray();
+
+        regexTriggers = regexIndices.stream().mapToInt(Integer::intValue).toArray();
+        regexes = new Matcher[regexTriggers.length];
+        combined = new boolean[regexTriggers.length];
+        groups = new int[regexTriggers.length];
+        StringJoiner alternation = new StringJoiner("|");
+        int group = 1;
+        int count = 0;
+        for (int i = 0; i < regexTriggers.length; i++) {
+            String pattern = this.triggers.get(regexTriggers[i]).getPattern();
+            // The anchored checks look at the whole line, so lookbehinds and ^ behave as in an unanchored search.
+            regexes[i] = Pattern.compile(pattern).matcher("").useTransparentBounds(true).useAnchoringBounds(false);
+            combined[i] = !GROUP_REFERENCE.matcher(pattern).find();
+            if (combined[i]) {
+                alternation.add("(" + pattern + ")");
+                groups[i] = group;
+                group += 1 + regexes[i].groupCount();
+                count++;
+            }
+        }
+        combinedCount = count;
+        combinedRegex = alternation.length() == 0 ? null : Pattern.compile(alternation.toString()).matcher("");
+    }
+
+    public boolean isEmpty() {
+        return triggers.isEmpty();
+    }
+
+    // Every trigger fires at most once per line.
+    public void match(String line, Consumer<ConsoleTrigger> action) {
+        long current = lineCount++;
+        if (alphabet.length > 0) {
+            int width = alphabet.length;
+            int state = 0;
+            for (int i = 0; i < line.length(); i++) {
+                int symbol = Arrays.binarySearch(alphabet, line.charAt(i));
+                state = symbol < 0 ? 0 : transitions[state * width + symbol];
+                for (int index: outputs[state])
+                    fire(index, current, action);
+            }
+        }
+        if (combinedRegex != null)
+            matchCombined(line, current, action);
+        for (int i = 0; i < regexes.length; i++) {
+            if (!combined[i] && regexes[i].reset(line).find())
+                fire(regexTriggers[i], current, action);
+        }
+    }
+
+    // Every position where one of the combined regexes matches is visited, so each regex is seen at the first
+    // position it matches at.
+    private void matchCombined(String line, long current, Consumer<ConsoleTrigger> action) {
+        int remaining = combinedCount;
+        int from = 0;
+        combinedRegex.reset(line);
+        while (remaining > 0 && from <= line.length() && combinedRegex.find(from)) {
+            int start = combinedRegex.start();
+            int first = 0;
+            while (!combined[first] || combinedRegex.start(groups[first]) < 0)
+                first++;
+            for (int i = first; i < regexes.length; i++) {
+                if (!combined[i] || firedAt[regexTriggers[i]] == current)
+                    continue;
+                if (i == first || regexes[i].reset(line).region(start, line.length()).lookingAt()) {
+                    fire(regexTriggers[i], current, action);
+                    remaining--;
+                }
+            }
+            from = start + 1;
+        }
+    }
+
+    private void fire(int index, long current, Consumer<ConsoleTrigger> action) {
+        if (firedAt[index] == current)
+            return;
+        firedAt[index] = current;
+        action.accept(triggers.get(index));
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabet.length];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private int symbol(char c) {
+        return Arrays.binarySearch(alphabet, c);
+    }
+
+    private char[] buildAlphabet(List<Integer> literals) {
+        TreeSet<Character> characters = new TreeSet<>();
+        for (int index: literals) {
+            String pattern = triggers.get(index).getPattern();
+            for (int i = 0; i < pattern.length(); i++)
+                characters.add(pattern.charAt(i));
+        }
+        char[] result = new char[characters.size()];
+        int i = 0;
+        for (char c: characters)
+            result[i++] = c;
+        return result;
+    }
+}
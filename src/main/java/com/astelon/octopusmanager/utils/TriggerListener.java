@@ -0,0 +1,9 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleTrigger;
+
+@FunctionalInterface
+public interface TriggerListener {
+
+    void triggered(String serverName, ConsoleTrigger trigger, String line);
+}
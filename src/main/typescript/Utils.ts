@@ -24,6 +24,30 @@ export type User = {
 export type LineType = {
   id: number
   text: string
+  sequence?: number
+  repeats?: number
+}
+
+export type ConsoleLines = {
+  epoch: string|null
+  firstSequence: number
+  lastSequence: number
+  // Null for the lines of a gap after the first one, which says how many were skipped.
+  lines: (string|null)[]
+}
+
+export type RestartCountdown = {
+  attempt: number
+  maxAttempts: number
+  delay: number
+  restartTime: number
+  cancelled: boolean
+}
+
+export type RepeatedLine = {
+  sequence: number
+  repeats: number
+  finished: boolean
 }
 
 export function isAdmin(user: User|null): boolean {
@@ -36,6 +60,11 @@ export function canStart(status: string|null): boolean {
   return status === "OFFLINE" || status === "CRASHED";
 }
 
+// ONLINE servers are still waiting for their readiness probe, READY ones passed it.
+export function isRunning(status: string|null): boolean {
+  return status === "ONLINE" || status === "READY";
+}
+
 export type ServerSocketSub = {
   serverName: string
   subscription: StompSubscription
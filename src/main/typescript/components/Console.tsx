@@ -34,7 +34,9 @@ export default function Console({lines}: Props) {
       <ListGroup className="console d-flex flex-column border" ref={scrollable}>
         {lines.length === 0 ? <p className="console-line">The console is empty.</p> :
         lines.map(line => (
-          <span className="console-line" key={line.id}>{line.text}</span>
+          <span className="console-line" key={line.id}>
+            {line.text}{line.repeats !== undefined && ` (repeated ${line.repeats} more times)`}
+          </span>
         ))}
       </ListGroup>
     </Card.Body>
@@ -1,6 +1,6 @@
-import React, {FormEvent, useEffect, useState} from "react";
+import React, {FormEvent, useEffect, useRef, useState} from "react";
 import Card from "react-bootstrap/Card";
-import {canStart, LineType, ServerName} from "../Utils";
+import {canStart, isRunning, ConsoleLines, LineType, RepeatedLine, RestartCountdown, ServerName} from "../Utils";
 import {useParams} from "react-router-dom";
 import Button from "react-bootstrap/Button";
 import axios from "axios";
@@ -28,11 +28,18 @@ export default function ConsoleArea({webSocket, webSocketConnected, maxLines, se
   const {serverName} = useParams<ServerName>();
   const [onlineStatus, setOnlineStatus] = useState<string|null>(null);
   const [showKill, setShowKill] = useState(false);
+  const [restartTime, setRestartTime] = useState<number|null>(null);
+  const [now, setNow] = useState(Date.now());
   const [lines, setLines] = useState<LineType[]>([]);
   const [command, setCommand] = useState("");
+  const lastSequence = useRef(0);
+  const lastEpoch = useRef<string|null>(null);
+  const lastServer = useRef<string|null>(null);
 
   useEffect(() => {
     let serverSub: StompSubscription;
+    let restartSub: StompSubscription;
+    setRestartTime(null);
     async function getOnlineStatus(name: string) {
       try {
         const response = await axios.get(`/api/server/${name}/status`);
@@ -41,6 +48,12 @@ export default function ConsoleArea({webSocket, webSocketConnected, maxLines, se
           if (webSocket !== null && webSocketConnected) {
             serverSub = webSocket.subscribe(`/topic/status/${serverName}`, (message: IMessage) => {
               setOnlineStatus(message.body);
+              if (message.body !== "CRASHED")
+                setRestartTime(null);
+            });
+            restartSub = webSocket.subscribe(`/topic/restarts/${serverName}`, (message: IMessage) => {
+              const countdown: RestartCountdown = JSON.parse(message.body);
+              setRestartTime(countdown.cancelled ? null : Date.now() + countdown.delay);
             });
           }
         } else
@@ -52,22 +65,86 @@ export default function ConsoleArea({webSocket, webSocketConnected, maxLines, se
     getOnlineStatus(serverName);
     return (() => {
       serverSub?.unsubscribe();
+      restartSub?.unsubscribe();
     });
   }, [serverName, webSocket, webSocketConnected]);
 
+  useEffect(() => {
+    if (restartTime === null)
+      return;
+    const interval = setInterval(() => setNow(Date.now()), 1000);
+    return (() => clearInterval(interval));
+  }, [restartTime]);
+
   useEffect(() => {
     let consoleSub: StompSubscription;
+    let repeatSub: StompSubscription;
+    let cancelled = false;
+    let snapshotLoaded = false;
+    const pending: ConsoleLines[] = [];
+    if (lastServer.current !== serverName) {
+      lastServer.current = serverName;
+      lastSequence.current = 0;
+      lastEpoch.current = null;
+    }
+    const since = lastSequence.current;
+    const epoch = lastEpoch.current;
+
+    function applyLines(batch: ConsoleLines) {
+      // The sequences restart with every run of the manager. The lines shown so far are kept, without sequences so
+      // the repeat markers of the new run don't land on them.
+      if (batch.epoch !== lastEpoch.current) {
+        lastEpoch.current = batch.epoch;
+        lastSequence.current = 0;
+        setLines(previousLines => previousLines.map(line => ({...line, sequence: undefined})));
+      }
+      if (batch.lastSequence <= lastSequence.current)
+        return;
+      const skipped = Math.max(0, lastSequence.current + 1 - batch.firstSequence);
+      const newLines: LineType[] = [];
+      batch.lines.slice(skipped).forEach((line, i) => {
+        if (line !== null)
+          newLines.push({id: lastId++, text: line, sequence: batch.firstSequence + skipped + i});
+      });
+      lastSequence.current = batch.lastSequence;
+      setLines(previousLines => trimArray(previousLines.concat(newLines), maxLines));
+    }
+
     async function startWebSocket() {
+      // Subscribe before fetching the missed lines, so nothing printed in between is lost. Frames that arrive
+      // before the snapshot are held back, and applyLines drops whatever the snapshot already covered.
+      if (webSocket !== null && webSocketConnected) {
+        consoleSub = webSocket.subscribe(`/topic/console/${serverName}`, (message: IMessage) => {
+          const batch: ConsoleLines = JSON.parse(message.body);
+          const skipped = message.headers["skipped-lines"];
+          if (snapshotLoaded) {
+            if (skipped !== undefined) {
+              const marker = {id: lastId++, text: `[OctopusManager] ${skipped} lines were skipped because the connection is too slow.`};
+              setLines(previousLines => trimArray(previousLines.concat(marker), maxLines));
+            }
+            applyLines(batch);
+          } else
+            pending.push(batch);
+        });
+        repeatSub = webSocket.subscribe(`/topic/repeats/${serverName}`, (message: IMessage) => {
+          const repeated: RepeatedLine = JSON.parse(message.body);
+          setLines(previousLines => previousLines.map(line => line.sequence === repeated.sequence ?
+            {...line, repeats: repeated.repeats} : line));
+        });
+      }
       try {
-        const response = await axios.get(`/api/server/${serverName}/console`);
+        const response = await axios.get(`/api/server/${serverName}/console`, {params: {since: since, epoch: epoch ?? undefined}});
+        if (cancelled)
+          return;
         if (response.status === 200) {
-          const lineList = response.data.map((line: string) => ({id: lastId++, text: line}));
-          setLines(lineList);
-          if (webSocket !== null && webSocketConnected) {
-            consoleSub = webSocket.subscribe(`/topic/console/${serverName}`, (message: IMessage) => {
-              setLines(previousLines => trimArray(previousLines.concat({id: lastId++, text: message.body}), maxLines));
-            });
+          const snapshot: ConsoleLines = response.data;
+          if (since === 0 || (snapshot.epoch === epoch && snapshot.lastSequence < since)) {
+            lastSequence.current = 0;
+            setLines([]);
           }
+          applyLines(snapshot);
+          pending.forEach(applyLines);
+          snapshotLoaded = true;
         } else {
           setError("Could not get the console of the server.");
         }
@@ -77,7 +154,9 @@ export default function ConsoleArea({webSocket, webSocketConnected, maxLines, se
     }
     startWebSocket();
     return (() => {
+      cancelled = true;
       consoleSub?.unsubscribe();
+      repeatSub?.unsubscribe();
     });
   }, [serverName, webSocket, webSocketConnected]);
 
@@ -146,13 +225,17 @@ export default function ConsoleArea({webSocket, webSocketConnected, maxLines, se
                                        confirmFunction={confirmKill}/>}
       <Card.Header className="d-flex justify-content-between align-items-center">
         <h5 style={{"marginBottom": "0"}}>Console - {serverName}</h5>
+        {restartTime !== null &&
+          <span>Restarting in {Math.max(0, Math.ceil((restartTime - now) / 1000))}s</span>}
         <div>
           {canStart(onlineStatus) && <Button variant="success"
                                                  onClick={startServer}>Start</Button>}
-          {onlineStatus === "ONLINE" && <Button variant="warning"
-                                                onClick={stopServer}>Stop</Button>}
-          {onlineStatus === "ONLINE" && <Button variant="danger" onClick={() => setShowKill(true)}>Kill</Button>}
-          {onlineStatus === "ONLINE" && <Button variant="primary" onClick={restartServer}>Restart</Button>}
+          {restartTime !== null && <Button variant="warning" onClick={stopServer}>Cancel restart</Button>}
+          {isRunning(onlineStatus) && <Button variant="warning"
+                                              onClick={stopServer}>Stop</Button>}
+          {(isRunning(onlineStatus) || onlineStatus === "STOPPING") &&
+            <Button variant="danger" onClick={() => setShowKill(true)}>Kill</Button>}
+          {isRunning(onlineStatus) && <Button variant="primary" onClick={restartServer}>Restart</Button>}
         </div>
       </Card.Header>
       <Console lines={lines}/>
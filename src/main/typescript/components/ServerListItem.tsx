@@ -2,7 +2,7 @@ import React from "react";
 import ListGroup from "react-bootstrap/ListGroup";
 import Button from "react-bootstrap/Button";
 import {useHistory} from "react-router-dom";
-import {canStart} from "../Utils";
+import {canStart, isRunning} from "../Utils";
 
 type Props = {
   serverName: string
@@ -51,12 +51,12 @@ export default function ServerListItem({serverName, onlineStatus, startServer, s
       <div>
         {canStart(onlineStatus) && <Button variant="success"
                                                onClick={event => serverAction(event, 1, serverName)}>Start</Button>}
-        {onlineStatus === "ONLINE" && <Button variant="warning"
-                                              onClick={event => serverAction(event, 2, serverName)}>Stop</Button>}
-        {onlineStatus === "ONLINE" && <Button variant="danger"
-                                              onClick={event => serverAction(event, 3, serverName)}>Kill</Button>}
-        {onlineStatus === "ONLINE" && <Button variant="primary"
-                                              onClick={event => serverAction(event, 4, serverName)}>Restart</Button>}
+        {isRunning(onlineStatus) && <Button variant="warning"
+                                            onClick={event => serverAction(event, 2, serverName)}>Stop</Button>}
+        {isRunning(onlineStatus) && <Button variant="danger"
+                                            onClick={event => serverAction(event, 3, serverName)}>Kill</Button>}
+        {isRunning(onlineStatus) && <Button variant="primary"
+                                            onClick={event => serverAction(event, 4, serverName)}>Restart</Button>}
       </div>
     </ListGroup.Item>
   );
@@ -27,6 +27,8 @@ export default function EditServerPage({logoutFunction, user}: Props) {
   const [directories, setDirectories] = useState<string[]>([]);
   const [timeBetweenCrashes, setTimeBetweenCrashes] = useState("0");
   const [restartAttempts, setRestartAttempts] = useState("0");
+  // Settings this page doesn't edit, such as triggers, are sent back unchanged.
+  const [otherSettings, setOtherSettings] = useState<Record<string, unknown>>({});
 
   const [error, setError] = useState<string|null>(null);
   const [badCommand, setBadCommand] = useState(false);
@@ -44,6 +46,7 @@ export default function EditServerPage({logoutFunction, user}: Props) {
           setDirectories(response.data["extraDirectories"]);
           setTimeBetweenCrashes(response.data["timeBetweenCrashes"]);
           setRestartAttempts(response.data["restartAttempts"]);
+          setOtherSettings(response.data);
         } else if (response.status === 404) {
           history.push("/");
         } else {
@@ -70,6 +73,7 @@ export default function EditServerPage({logoutFunction, user}: Props) {
     try {
       const response = await axios.patch(`/api/servers/edit/${serverName}`,
         {
+          ...otherSettings,
           command: command, workingDirectory: workingDirectory, extraDirectories: directories,
           timeBetweenCrashes: +timeBetweenCrashes, restartAttempts: +restartAttempts
         });
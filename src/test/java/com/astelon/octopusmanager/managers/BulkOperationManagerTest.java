@@ -0,0 +1,59 @@
+package com.astelon.octopusmanager.managers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkOperationManagerTest {
+
+    @Test
+    void ordersServersAfterTheirPrerequisites() {
+        Set<String> names = new LinkedHashSet<>(List.of("proxy", "lobby", "survival", "database"));
+        Map<String, Set<String>> prerequisites = prerequisites(names, "proxy", "lobby", "lobby", "survival",
+                "survival", "database");
+        assertEquals(List.of("database", "survival", "lobby", "proxy"), BulkOperationManager.sort(names,
+                prerequisites));
+    }
+
+    @Test
+    void keepsTheSelectionOrderOfIndependentServers() {
+        Set<String> names = new LinkedHashSet<>(List.of("c", "b", "a", "d"));
+        Map<String, Set<String>> prerequisites = prerequisites(names, "c", "a");
+        assertEquals(List.of("b", "a", "d", "c"), BulkOperationManager.sort(names, prerequisites));
+    }
+
+    @Test
+    void rejectsDependencyCycles() {
+        Set<String> names = new LinkedHashSet<>(List.of("a", "b", "c", "d"));
+        Map<String, Set<String>> prerequisites = prerequisites(names, "a", "b", "b", "c", "c", "a");
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> BulkOperationManager.sort(names, prerequisites));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
+    @Test
+    void rejectsServersDependingOnThemselves() {
+        Set<String> names = Set.of("a");
+        Map<String, Set<String>> prerequisites = prerequisites(names, "a", "a");
+        assertThrows(ResponseStatusException.class, () -> BulkOperationManager.sort(names, prerequisites));
+    }
+
+    // Pairs of a server and one of its prerequisites. Like in submit, every selected server gets an entry.
+    private static Map<String, Set<String>> prerequisites(Set<String> names, String... pairs) {
+        Map<String, Set<String>> prerequisites = new LinkedHashMap<>();
+        for (String name: names)
+            prerequisites.put(name, new LinkedHashSet<>());
+        for (int i = 0; i < pairs.length; i += 2)
+            prerequisites.get(pairs[i]).add(pairs[i + 1]);
+        return prerequisites;
+    }
+}
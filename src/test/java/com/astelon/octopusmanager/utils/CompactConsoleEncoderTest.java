@@ -0,0 +1,89 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactConsoleEncoderTest {
+
+    @Test
+    void roundTripsLinesAndSequences() {
+        List<String> lines = List.of("[12:00:00 INFO]: Done (3.2s)!", "",
+                "\u00fcn\u00efc\u00f6d\u00e9 \u2713 \u65e5\u672c\u8a9e", "x".repeat(300));
+        Decoded decoded = decode(CompactConsoleEncoder.encode(new ConsoleLines("run-1", 300, 303, lines)));
+        assertEquals(CompactConsoleEncoder.VERSION, decoded.version);
+        assertEquals("run-1", decoded.epoch);
+        assertEquals(300, decoded.firstSequence);
+        assertEquals(lines, decoded.lines);
+    }
+
+    @Test
+    void encodesLargeSequencesAsVarints() {
+        long firstSequence = (1L << 40) + 5;
+        byte[] encoded = CompactConsoleEncoder.encode("e", firstSequence, List.of("a"));
+        Decoded decoded = decode(encoded);
+        assertEquals(firstSequence, decoded.firstSequence);
+        assertEquals(List.of("a"), decoded.lines);
+        // Version, epoch length and byte, six varint bytes for 2^40 + 5, count, line length and byte.
+        assertEquals(1 + 2 + 6 + 1 + 2, encoded.length);
+    }
+
+    @Test
+    void writesMissingEpochAndSkippedLinesAsEmpty() {
+        Decoded decoded = decode(CompactConsoleEncoder.encode(null, 1, Arrays.asList("a", null, "b")));
+        assertEquals("", decoded.epoch);
+        assertEquals(List.of("a", "", "b"), decoded.lines);
+    }
+
+    @Test
+    void encodesNoLines() {
+        Decoded decoded = decode(CompactConsoleEncoder.encode("e", 7, List.of()));
+        assertEquals(7, decoded.firstSequence);
+        assertEquals(List.of(), decoded.lines);
+    }
+
+    private static Decoded decode(byte[] encoded) {
+        ByteArrayInputStream input = new ByteArrayInputStream(encoded);
+        Decoded decoded = new Decoded();
+        decoded.version = (byte) input.read();
+        decoded.epoch = readString(input);
+        decoded.firstSequence = readVarint(input);
+        long count = readVarint(input);
+        decoded.lines = new ArrayList<>();
+        for (long i = 0; i < count; i++)
+            decoded.lines.add(readString(input));
+        assertEquals(0, input.available());
+        return decoded;
+    }
+
+    private static String readString(ByteArrayInputStream input) {
+        byte[] bytes = new byte[(int) readVarint(input)];
+        assertEquals(bytes.length, input.read(bytes, 0, bytes.length));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarint(ByteArrayInputStream input) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+
+    private static class Decoded {
+
+        private byte version;
+        private String epoch;
+        private long firstSequence;
+        private List<String> lines;
+    }
+}
@@ -0,0 +1,110 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsoleCacheTest {
+
+    // Every cached line costs its UTF-8 length plus 16 bytes.
+    private static final int LINE_BYTES = 4 + 16;
+
+    @Test
+    void keepsTheNewestLinesUpToItsCapacity() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 4, 0);
+        accept(cache, 1, 6);
+        assertEquals(List.of("l003", "l004", "l005", "l006"), cache.getCachedLines());
+        assertEquals(4, cache.getSize());
+        assertEquals(6, cache.getLastSequence());
+        assertEquals(4 * LINE_BYTES, cache.getBytes());
+    }
+
+    @Test
+    void returnsTheLinesAfterASequence() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 4, 0);
+        accept(cache, 1, 6);
+        ConsoleLines after = cache.getLinesAfter(4);
+        assertEquals(5, after.getFirstSequence());
+        assertEquals(6, after.getLastSequence());
+        assertEquals(List.of("l005", "l006"), after.getLines());
+        ConsoleLines current = cache.getLinesAfter(6);
+        assertEquals(7, current.getFirstSequence());
+        assertTrue(current.getLines().isEmpty());
+        // A sequence ahead of the cache is from an earlier run.
+        ConsoleLines ahead = cache.getLinesAfter(100);
+        assertEquals(3, ahead.getFirstSequence());
+        assertEquals(4, ahead.getLines().size());
+    }
+
+    @Test
+    void evictsTheOldestLinesOverTheByteLimit() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 10, 2 * LINE_BYTES + 10);
+        accept(cache, 1, 5);
+        assertEquals(List.of("l004", "l005"), cache.getCachedLines());
+        assertEquals(2 * LINE_BYTES, cache.getBytes());
+    }
+
+    @Test
+    void evictToReleasesTheOldestLines() {
+        ConsoleMemoryGovernor governor = new ConsoleMemoryGovernor(0);
+        ConsoleCache cache = new ConsoleCache(governor, 10, 0);
+        accept(cache, 1, 5);
+        assertEquals(5 * LINE_BYTES, governor.getUsed());
+        assertEquals(3 * LINE_BYTES, cache.evictTo(2 * LINE_BYTES));
+        assertEquals(List.of("l004", "l005"), cache.getCachedLines());
+        assertEquals(2 * LINE_BYTES, governor.getUsed());
+    }
+
+    @Test
+    void keepsTheLinesBeforeAGapAndMarksTheSkippedOnes() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 10, 0);
+        accept(cache, 1, 3);
+        cache.accept(6, "l006");
+        ConsoleLines lines = cache.getLinesAfter(0);
+        assertEquals(1, lines.getFirstSequence());
+        assertEquals(6, lines.getLastSequence());
+        assertEquals(6, lines.getLines().size());
+        assertEquals(List.of("l001", "l002", "l003"), lines.getLines().subList(0, 3));
+        assertTrue(lines.getLines().get(3).startsWith("[OctopusManager] 2 lines were skipped"));
+        assertNull(lines.getLines().get(4));
+        assertEquals("l006", lines.getLines().get(5));
+        assertEquals(5, cache.getCachedLines().size());
+        cache.accept(7, "l007");
+        assertEquals(List.of("l006", "l007"), cache.getLinesAfter(5).getLines());
+    }
+
+    @Test
+    void gapLongerThanTheCacheOnlyKeepsTheEndOfTheGap() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 4, 0);
+        accept(cache, 1, 2);
+        cache.accept(20, "l020");
+        ConsoleLines lines = cache.getLinesAfter(0);
+        assertEquals(17, lines.getFirstSequence());
+        assertEquals(20, lines.getLastSequence());
+        assertTrue(lines.getLines().get(0).startsWith("[OctopusManager] 17 lines were skipped"));
+        assertEquals(Arrays.asList(null, null, "l020"), lines.getLines().subList(1, 4));
+    }
+
+    @Test
+    void newNumberingReplacesTheCachedLines() {
+        ConsoleCache cache = new ConsoleCache(new ConsoleMemoryGovernor(0), 10, 0);
+        accept(cache, 1, 3);
+        cache.accept(1, "new1");
+        ConsoleLines lines = cache.getLinesAfter(0);
+        assertEquals(1, lines.getFirstSequence());
+        assertEquals(1, lines.getLastSequence());
+        assertEquals(List.of("new1"), lines.getLines());
+        assertEquals(LINE_BYTES, cache.getBytes());
+    }
+
+    private static void accept(ConsoleCache cache, long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++)
+            cache.accept(sequence, String.format("l%03d", sequence));
+    }
+}
@@ -0,0 +1,110 @@
+package com.astelon.octopusmanager.utils;
+
+import com.astelon.octopusmanager.data.ConsoleLines;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsolePipelineTest {
+
+    @Test
+    void numbersLinesFromOneAndDeliversThemInOrder() {
+        ConsolePipeline pipeline = new ConsolePipeline("test", 16, ConsolePipeline.OverflowPolicy.DROP_OLDEST,
+                Runnable::run);
+        RecordingSink sink = new RecordingSink();
+        pipeline.addSink("recording", sink);
+        for (int i = 1; i <= 40; i++)
+            assertEquals(i, pipeline.publish("line " + i));
+        assertEquals(40, pipeline.getLastSequence());
+        assertEquals(40, sink.sequences.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i + 1, sink.sequences.get(i).longValue());
+            assertEquals("line " + (i + 1), sink.lines.get(i));
+        }
+        assertEquals(0, sink.skipped);
+        assertEquals(0, pipeline.getDroppedLines());
+    }
+
+    @Test
+    void returnsOnlyTheLinesStillInTheRing() {
+        ConsolePipeline pipeline = new ConsolePipeline("test", 16, ConsolePipeline.OverflowPolicy.DROP_OLDEST,
+                Runnable::run);
+        for (int i = 1; i <= 40; i++)
+            pipeline.publish("line " + i);
+        ConsoleLines all = pipeline.getLines(1, 40);
+        assertEquals(25, all.getFirstSequence());
+        assertEquals(40, all.getLastSequence());
+        assertEquals(16, all.getLines().size());
+        assertEquals("line 25", all.getLines().get(0));
+        assertEquals("line 40", all.getLines().get(15));
+        ConsoleLines range = pipeline.getLines(30, 35);
+        assertEquals(30, range.getFirstSequence());
+        assertEquals(35, range.getLastSequence());
+        assertEquals(List.of("line 30", "line 31", "line 32", "line 33", "line 34", "line 35"), range.getLines());
+        ConsoleLines ahead = pipeline.getLines(41, 50);
+        assertEquals(41, ahead.getFirstSequence());
+        assertEquals(40, ahead.getLastSequence());
+        assertTrue(ahead.getLines().isEmpty());
+    }
+
+    @Test
+    void sinkThatFellARingBehindSkipsTheOverwrittenLines() {
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        ConsolePipeline pipeline = new ConsolePipeline("test", 16, ConsolePipeline.OverflowPolicy.DROP_OLDEST,
+                tasks::add);
+        RecordingSink sink = new RecordingSink();
+        pipeline.addSink("recording", sink);
+        for (int i = 1; i <= 40; i++)
+            pipeline.publish("line " + i);
+        while (!tasks.isEmpty())
+            tasks.poll().run();
+        assertEquals(24, sink.skipped);
+        assertEquals(24, pipeline.getDroppedLines());
+        assertEquals(16, sink.sequences.size());
+        assertEquals(25, sink.sequences.get(0).longValue());
+        assertEquals("line 40", sink.lines.get(15));
+    }
+
+    @Test
+    void closeDrainsWhatTheSinksHaveLeft() {
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        ConsolePipeline pipeline = new ConsolePipeline("test", 16, ConsolePipeline.OverflowPolicy.DROP_OLDEST,
+                tasks::add);
+        RecordingSink sink = new RecordingSink();
+        pipeline.addSink("recording", sink);
+        for (int i = 1; i <= 5; i++)
+            pipeline.publish("line " + i);
+        pipeline.close();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), sink.sequences);
+        assertTrue(sink.closed);
+    }
+
+    private static class RecordingSink implements ConsoleSink {
+
+        private final List<Long> sequences = new ArrayList<>();
+        private final List<String> lines = new ArrayList<>();
+        private long skipped;
+        private boolean closed;
+
+        @Override
+        public void accept(long sequence, String line) {
+            sequences.add(sequence);
+            lines.add(line);
+        }
+
+        @Override
+        public void skipped(long count) {
+            skipped += count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}